@@ -0,0 +1,556 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A SplayTree whose nodes live in parallel arrays instead of BinaryNode
+ * objects. A node is a slot index; its children are ints in left and right,
+ * its subtree size is in sizes and its element is in elements. That is 16
+ * bytes of structure per entry against a 32 byte BinaryNode, and the
+ * collector traces four arrays rather than one object per node. Removed
+ * slots are chained into a free list through left and reused by later
+ * inserts.
+ * 
+ */
+public class ArenaSplayTree<T extends Comparable<? super T>> {
+	private static final int NIL = -1;
+	
+	private int[] left;
+	private int[] right;
+	private int[] sizes;
+	private Object[] elements;
+	private int root = NIL;
+	private int free = NIL;
+	private int used = 0;
+	private int size = 0;
+	private int modCount = 0;
+	
+	/**
+	 * Constructs an ArenaSplayTree
+	 * Sets the root to null
+	 */
+	public ArenaSplayTree() {
+		this(16);
+	}
+	
+	/**
+	 * Constructs an ArenaSplayTree with room for capacity elements before
+	 * the arena grows
+	 * 
+	 * @param capacity	number of elements to make room for
+	 * @exception	IllegalArgumentException if capacity is negative
+	 */
+	public ArenaSplayTree(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException();
+		}
+		left = new int[capacity];
+		right = new int[capacity];
+		sizes = new int[capacity];
+		elements = new Object[capacity];
+	}
+	
+	/**
+	 * Inserts an element into the ArenaSplayTree. An element equal to one
+	 * already present is merged into it if it is Insertable, as in
+	 * SplayTree.
+	 * 
+	 * @param item	the item to insert
+	 * @return 	true if the item was inserted or merged; false if not
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean insert(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == NIL) {
+			root = allocate(item);
+		} else {
+			root = splay(item, null, root);
+			int rootCompare = item.compareTo(elementAt(root));
+			if(rootCompare == 0) {
+				if(item instanceof Insertable) {
+					return ((Insertable) elementAt(root)).insert(item);
+				} else {
+					return false;
+				}
+			}
+			int node = allocate(item);
+			if(rootCompare > 0) {
+				right[node] = right[root];
+				right[root] = NIL;
+				left[node] = root;
+			} else {
+				left[node] = left[root];
+				left[root] = NIL;
+				right[node] = root;
+			}
+			sizes[root] = 1 + sizeOf(left[root]) + sizeOf(right[root]);
+			sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+			root = node;
+		}
+		size++;
+		modCount++;
+		return true;
+	}
+	
+	/**
+	 * Finds an element and splays it to the root
+	 * 
+	 * @param item	the item to look for
+	 * @return 	the element found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T find(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return access(item, null);
+	}
+	
+	/**
+	 * Finds the element with the given key and splays it to the root
+	 * 
+	 * @param key	the key to look for
+	 * @param extractor	extracts the key from an element
+	 * @return 	the element found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return access(key, extractor);
+	}
+	
+	private T access(Object key, KeyExtractor<?, ? super T> extractor) {
+		if(root == NIL) {
+			return null;
+		}
+		root = splay(key, extractor, root);
+		return compare(key, extractor, root) == 0 ? elementAt(root) : null;
+	}
+	
+	/**
+	 * Removes an element from the ArenaSplayTree and frees its slot
+	 * 
+	 * @param item	the item to remove
+	 * @return 	true if the item was removed; false if it was not present
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean remove(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == NIL) {
+			return false;
+		}
+		root = splay(item, null, root);
+		if(item.compareTo(elementAt(root)) != 0) {
+			return false;
+		}
+		int removed = root;
+		if(left[root] != NIL) {
+			// item is larger than everything on the left, so this brings up the maximum
+			int node = splay(item, null, left[root]);
+			right[node] = right[root];
+			sizes[node] += sizeOf(right[root]);
+			root = node;
+		} else {
+			root = right[root];
+		}
+		release(removed);
+		size--;
+		modCount++;
+		return true;
+	}
+	
+	/**
+	 * Method to determine the size of the ArenaSplayTree
+	 * 
+	 * @return 	size of the ArenaSplayTree; 0 if ArenaSplayTree is empty
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Method to determine if the ArenaSplayTree is empty
+	 * 
+	 * @return 	true if the ArenaSplayTree is empty; false if not
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+	
+	/**
+	 * Method to determine how many elements of the ArenaSplayTree sort
+	 * before item. The item does not need to be in the ArenaSplayTree.
+	 * 
+	 * @param item	the item to rank
+	 * @return 	number of elements less than item
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public int rank(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == NIL) {
+			return 0;
+		}
+		root = splay(item, null, root);
+		int rank = sizeOf(left[root]);
+		if(item.compareTo(elementAt(root)) > 0) {
+			rank++;
+		}
+		return rank;
+	}
+	
+	/**
+	 * Method that returns the element at position k of the ArenaSplayTree in
+	 * order. The selected element is splayed to the root.
+	 * 
+	 * @param k	zero based position of the element
+	 * @return 	the k-th smallest element
+	 * @exception	IndexOutOfBoundsException if k is not between 0 and size() - 1
+	 */
+	public T select(int k) {
+		if(k < 0 || k >= size) {
+			throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + size);
+		}
+		int node = root;
+		while(true) {
+			int leftSize = sizeOf(left[node]);
+			if(k < leftSize) {
+				node = left[node];
+			} else if(k > leftSize) {
+				k -= leftSize + 1;
+				node = right[node];
+			} else {
+				break;
+			}
+		}
+		root = splay(elementAt(node), null, root);
+		return elementAt(root);
+	}
+	
+	/**
+	 * Iterator that returns the elements from from up to, but not including,
+	 * to in order. Splays on from to find the start, then walks lazily.
+	 * 
+	 * @param from	lowest element to return
+	 * @param to	element to stop at
+	 * @return 	an iterator over the range
+	 * @exception	IllegalArgumentException if from or to is null
+	 */
+	public Iterator<T> range(T from, T to) {
+		if(from == null || to == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root != NIL) {
+			root = splay(from, null, root);
+		}
+		return new inOrderTreeIterator(from, to);
+	}
+	
+	/**
+	 * Method to determine the height of the ArenaSplayTree
+	 * 
+	 * @return 	height of the ArenaSplayTree; -1 if ArenaSplayTree is empty
+	 */
+	public int height() {
+		if(root == NIL) {
+			return -1;
+		}
+		int height = -1;
+		int[] level = {root};
+		int count = 1;
+		int[] next = new int[2];
+		while(count > 0) {
+			height++;
+			int nextCount = 0;
+			if(next.length < count * 2) {
+				next = new int[count * 2];
+			}
+			for(int i = 0; i < count; i++) {
+				if(left[level[i]] != NIL) {
+					next[nextCount++] = left[level[i]];
+				}
+				if(right[level[i]] != NIL) {
+					next[nextCount++] = right[level[i]];
+				}
+			}
+			int[] swap = level;
+			level = next;
+			next = swap;
+			count = nextCount;
+		}
+		return height;
+	}
+	
+	/**
+	 * Iterator that returns the elements in order
+	 * 
+	 * @return 	an iterator to traverse the elements in order
+	 */
+	public Iterator<T> inOrderIterator() {
+		return new inOrderTreeIterator(null, null);
+	}
+	
+	/**
+	 * Takes a slot off the free list, or the next unused one, growing the
+	 * arrays by half when they are full
+	 */
+	private int allocate(T item) {
+		int slot;
+		if(free != NIL) {
+			slot = free;
+			free = left[slot];
+		} else {
+			if(used == elements.length) {
+				int capacity = Math.max(16, used + (used >> 1));
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+				elements = Arrays.copyOf(elements, capacity);
+			}
+			slot = used++;
+		}
+		left[slot] = NIL;
+		right[slot] = NIL;
+		sizes[slot] = 1;
+		elements[slot] = item;
+		return slot;
+	}
+	
+	/**
+	 * Puts a slot on the free list, dropping its element
+	 */
+	private void release(int slot) {
+		elements[slot] = null;
+		right[slot] = NIL;
+		left[slot] = free;
+		free = slot;
+	}
+	
+	/**
+	 * Top-down splay of the subtree rooted at node on key, relinking the
+	 * slots passed into a left and a right tree and fixing their sizes as
+	 * SplayTree does
+	 * 
+	 * @param key	the key or item to splay on
+	 * @param extractor	extracts the key from an element; null to compare elements
+	 * @param node	root of the subtree to splay; must not be NIL
+	 * @return 	the new root of the subtree
+	 */
+	private int splay(Object key, KeyExtractor<?, ? super T> extractor, int node) {
+		int leftTree = NIL, leftMax = NIL;
+		int rightTree = NIL, rightMin = NIL;
+		int leftSize = 0, rightSize = 0;
+		while(true) {
+			int compare = compare(key, extractor, node);
+			if(compare < 0) {
+				int child = left[node];
+				if(child == NIL) {
+					break;
+				}
+				if(compare(key, extractor, child) < 0) {
+					// zig-zig: rotate right before linking
+					left[node] = right[child];
+					right[child] = node;
+					sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+					node = child;
+					if(left[node] == NIL) {
+						break;
+					}
+				}
+				// link right
+				if(rightTree == NIL) {
+					rightTree = node;
+				} else {
+					left[rightMin] = node;
+				}
+				rightMin = node;
+				rightSize += 1 + sizeOf(right[node]);
+				node = left[node];
+			} else if(compare > 0) {
+				int child = right[node];
+				if(child == NIL) {
+					break;
+				}
+				if(compare(key, extractor, child) > 0) {
+					// zig-zig: rotate left before linking
+					right[node] = left[child];
+					left[child] = node;
+					sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+					node = child;
+					if(right[node] == NIL) {
+						break;
+					}
+				}
+				// link left
+				if(leftTree == NIL) {
+					leftTree = node;
+				} else {
+					right[leftMax] = node;
+				}
+				leftMax = node;
+				leftSize += 1 + sizeOf(left[node]);
+				node = right[node];
+			} else {
+				break;
+			}
+		}
+		leftSize += sizeOf(left[node]);
+		rightSize += sizeOf(right[node]);
+		sizes[node] = leftSize + rightSize + 1;
+		// fix sizes down the right spine of the left tree and vice versa
+		if(leftTree != NIL) {
+			right[leftMax] = NIL;
+			for(int spine = leftTree; spine != NIL; spine = right[spine]) {
+				sizes[spine] = leftSize;
+				leftSize -= 1 + sizeOf(left[spine]);
+			}
+		}
+		if(rightTree != NIL) {
+			left[rightMin] = NIL;
+			for(int spine = rightTree; spine != NIL; spine = left[spine]) {
+				sizes[spine] = rightSize;
+				rightSize -= 1 + sizeOf(right[spine]);
+			}
+		}
+		// assemble
+		if(leftTree != NIL) {
+			right[leftMax] = left[node];
+			left[node] = leftTree;
+		}
+		if(rightTree != NIL) {
+			left[rightMin] = right[node];
+			right[node] = rightTree;
+		}
+		return node;
+	}
+	
+	private int sizeOf(int slot) {
+		return slot == NIL ? 0 : sizes[slot];
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T elementAt(int slot) {
+		return (T) elements[slot];
+	}
+	
+	@SuppressWarnings("unchecked")
+	private int compare(Object key, KeyExtractor<?, ? super T> extractor, int slot) {
+		if(extractor == null) {
+			return ((T) key).compareTo(elementAt(slot));
+		}
+		return ((Comparable<Object>) key).compareTo(extractor.keyOf(elementAt(slot)));
+	}
+	
+	/**
+	 * An in order ArenaSplayTree iterator implementation class, optionally
+	 * limited to a range
+	 * 
+	 */
+	private class inOrderTreeIterator implements Iterator<T> {
+		private int[] list = new int[32];
+		private int depth = 0;
+		private int node = NIL;
+		private int mod;
+		private final T to;
+		
+		/**
+		 * Constructs an inOrderTreeIterator
+		 * 
+		 * @param from	lowest element to return; null to start at the smallest
+		 * @param to	element to stop at; null to run to the end
+		 */
+		public inOrderTreeIterator(T from, T to) {
+			this.mod = modCount;
+			this.to = to;
+			if(from == null) {
+				checkLeft(root);
+			} else {
+				seek(from, true);
+			}
+		}
+		
+		public boolean hasNext() {
+			return depth > 0 && (to == null || to.compareTo(elementAt(list[depth - 1])) > 0);
+		}
+		
+		/**
+		 * Method that returns the next element from the ArenaSplayTree
+		 * 
+		 * @return 	element in the ArenaSplayTree
+		 * @exception 	ConcurrentModificationException if the ArenaSplayTree was modified after initializing the iterator
+		 * @exception 	NoSuchElementException if there are no more elements to return
+		 */
+		public T next() {
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int item = list[--depth];
+			checkLeft(right[item]);
+			node = item;
+			return elementAt(item);
+		}
+		
+		private void checkLeft(int node) {
+			while(node != NIL) {
+				push(node);
+				node = left[node];
+			}
+		}
+		
+		private void push(int node) {
+			if(depth == list.length) {
+				list = Arrays.copyOf(list, depth * 2);
+			}
+			list[depth++] = node;
+		}
+		
+		/**
+		 * Removes the last element returned from the ArenaSplayTree and
+		 * rebuilds the stack with one descent to the elements after it
+		 * 
+		 * @exception	IllegalStateException if next() not called before
+		 * @exception 	ConcurrentModificationException if the ArenaSplayTree was modified after initializing the iterator
+		 */
+		public void remove() {
+			if(node == NIL) {
+				throw new IllegalStateException();
+			}
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			T element = elementAt(node);
+			node = NIL;
+			ArenaSplayTree.this.remove(element);
+			mod = modCount;
+			seek(element, false);
+		}
+		
+		/**
+		 * Rebuilds the stack with one descent to the elements from element on,
+		 * including element itself if inclusive
+		 */
+		private void seek(T element, boolean inclusive) {
+			depth = 0;
+			for(int next = root; next != NIL;) {
+				int compare = element.compareTo(elementAt(next));
+				if(compare < 0 || (inclusive && compare == 0)) {
+					push(next);
+					next = left[next];
+				} else {
+					next = right[next];
+				}
+			}
+		}
+	}
+}
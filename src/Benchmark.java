@@ -0,0 +1,734 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Throughput benchmarks for the SplayTree based dictionaries.
+ * Run with the name of a benchmark, e.g. java Benchmark concurrent
+ */
+public class Benchmark {
+	private static final int KEYS = 1 << 17;
+	private static final long DURATION = 1000;
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+	
+	/**
+	 * One operation of a multi-threaded workload
+	 */
+	private interface Operation {
+		public void run(int key, int op);
+	}
+	
+	public static void main(String args[]) throws InterruptedException, IOException {
+		String name = args.length > 0 ? args[0] : "concurrent";
+		if(name.equals("concurrent")) {
+			concurrent();
+		} else if(name.equals("combining")) {
+			combining();
+		} else if(name.equals("optimistic")) {
+			optimistic();
+		} else if(name.equals("policy")) {
+			policy();
+		} else if(name.equals("wal")) {
+			wal();
+		} else if(name.equals("traversal")) {
+			traversal();
+		} else if(name.equals("primitive")) {
+			primitive();
+		} else if(name.equals("arena")) {
+			arena();
+		} else if(name.equals("compact")) {
+			compact();
+		} else if(name.equals("batch")) {
+			batch();
+		} else if(name.equals("cache")) {
+			cache();
+		} else if(name.equals("hashindex")) {
+			hashIndex();
+		} else if(name.equals("frozen")) {
+			frozen();
+		} else {
+			System.err.println("Unknown benchmark: " + name);
+		}
+	}
+	
+	/**
+	 * 90% find, 5% insert, 5% remove of random keys against one globally
+	 * locked SplayTree and against a ConcurrentSplayDictionary
+	 */
+	private static void concurrent() throws InterruptedException {
+		System.out.println("threads\tglobal lock ops/s\tsharded ops/s");
+		for(int threads : THREADS) {
+			final SplayTree<Integer> tree = new SplayTree<Integer>();
+			final ReentrantLock lock = new ReentrantLock();
+			final ConcurrentSplayDictionary<Integer> dictionary = new ConcurrentSplayDictionary<Integer>();
+			for(int i = 0; i < KEYS; i += 2) {
+				tree.insert(i);
+				dictionary.insert(i);
+			}
+			long global = run(threads, new Operation() {
+				public void run(int key, int op) {
+					lock.lock();
+					try {
+						if(op < 90) {
+							tree.find(key);
+						} else if(op < 95) {
+							tree.insert(key);
+						} else {
+							tree.remove(key);
+						}
+					} finally {
+						lock.unlock();
+					}
+				}
+			});
+			long sharded = run(threads, new Operation() {
+				public void run(int key, int op) {
+					if(op < 90) {
+						dictionary.find(key);
+					} else if(op < 95) {
+						dictionary.insert(key);
+					} else {
+						dictionary.remove(key);
+					}
+				}
+			});
+			System.out.println(threads + "\t" + global + "\t" + sharded);
+		}
+	}
+	
+	/**
+	 * The same workload as concurrent against one globally locked SplayTree
+	 * and against a CombiningSplayTree
+	 */
+	private static void combining() throws InterruptedException {
+		System.out.println("threads\tglobal lock ops/s\tcombining ops/s");
+		for(int threads : THREADS) {
+			final SplayTree<Integer> tree = new SplayTree<Integer>();
+			final ReentrantLock lock = new ReentrantLock();
+			final CombiningSplayTree<Integer> combining = new CombiningSplayTree<Integer>();
+			for(int i = 0; i < KEYS; i += 2) {
+				tree.insert(i);
+				combining.insert(i);
+			}
+			long global = run(threads, new Operation() {
+				public void run(int key, int op) {
+					lock.lock();
+					try {
+						if(op < 90) {
+							tree.find(key);
+						} else if(op < 95) {
+							tree.insert(key);
+						} else {
+							tree.remove(key);
+						}
+					} finally {
+						lock.unlock();
+					}
+				}
+			});
+			long combined = run(threads, new Operation() {
+				public void run(int key, int op) {
+					if(op < 90) {
+						combining.find(key);
+					} else if(op < 95) {
+						combining.insert(key);
+					} else {
+						combining.remove(key);
+					}
+				}
+			});
+			System.out.println(threads + "\t" + global + "\t" + combined);
+		}
+	}
+	
+	/**
+	 * 99% find, 1% insert against one globally locked SplayTree and against
+	 * an OptimisticSplayTree
+	 */
+	private static void optimistic() throws InterruptedException {
+		System.out.println("threads\tglobal lock ops/s\toptimistic ops/s");
+		for(int threads : THREADS) {
+			final SplayTree<Integer> tree = new SplayTree<Integer>();
+			final ReentrantLock lock = new ReentrantLock();
+			final OptimisticSplayTree<Integer> optimistic = new OptimisticSplayTree<Integer>();
+			for(int i = 0; i < KEYS; i += 2) {
+				tree.insert(i);
+				optimistic.insert(i);
+			}
+			long global = run(threads, new Operation() {
+				public void run(int key, int op) {
+					lock.lock();
+					try {
+						if(op < 99) {
+							tree.find(key);
+						} else {
+							tree.insert(key);
+						}
+					} finally {
+						lock.unlock();
+					}
+				}
+			});
+			long read = run(threads, new Operation() {
+				public void run(int key, int op) {
+					if(op < 99) {
+						optimistic.find(key);
+					} else {
+						optimistic.insert(key);
+					}
+				}
+			});
+			System.out.println(threads + "\t" + global + "\t" + read);
+		}
+	}
+	
+	/**
+	 * Zipfian finds, half of them misses, against a SplayTree with each
+	 * splay policy
+	 */
+	private static void policy() {
+		String[] names = {"always", "hits only", "probability 0.1", "deeper than 16", "semi-splay"};
+		SplayPolicy[] policies = {SplayPolicy.ALWAYS, SplayPolicy.HITS_ONLY, SplayPolicy.probability(0.1),
+				SplayPolicy.deeperThan(16), SplayPolicy.SEMI_SPLAY};
+		int finds = 2000000;
+		int[] keys = zipf(KEYS, 1.0, finds, new Random(1));
+		System.out.println("policy\tfinds/s\theight after");
+		for(int p = 0; p < policies.length; p++) {
+			SplayTree<Integer> tree = new SplayTree<Integer>();
+			Random random = new Random(2);
+			for(int i = 0; i < KEYS; i++) {
+				tree.insert(random.nextInt(KEYS) * 2);
+			}
+			tree.setSplayPolicy(policies[p]);
+			long start = System.nanoTime();
+			for(int i = 0; i < finds; i++) {
+				// odd keys are never present
+				tree.find(keys[i] * 2 + (i & 1));
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.println(names[p] + "\t" + finds * 1000000000L / elapsed + "\t" + tree.height());
+		}
+	}
+	
+	/**
+	 * Single-threaded inserts of new words into an in-memory SplayTree and
+	 * into a DurableDictionary under each sync policy
+	 */
+	private static void wal() throws IOException {
+		int inserts = 100000;
+		SplayTree<Entry> tree = new SplayTree<Entry>();
+		long start = System.nanoTime();
+		for(int i = 0; i < inserts; i++) {
+			tree.insert(new Entry("word" + i, "definition " + i));
+		}
+		System.out.println("policy\tinserts/s");
+		System.out.println("in memory\t" + inserts * 1000000000L / (System.nanoTime() - start));
+		
+		String[] names = {"every 1MB", "every 10ms", "per operation"};
+		WriteAheadLog.SyncPolicy[] policies = {WriteAheadLog.SyncPolicy.everyBytes(1 << 20),
+				WriteAheadLog.SyncPolicy.everyMillis(10), WriteAheadLog.SyncPolicy.PER_OPERATION};
+		for(int p = 0; p < policies.length; p++) {
+			Path directory = Files.createTempDirectory("dictionary");
+			DurableDictionary dictionary = DurableDictionary.open(directory, policies[p]);
+			int count = p == 2 ? inserts / 10 : inserts;
+			start = System.nanoTime();
+			for(int i = 0; i < count; i++) {
+				dictionary.insert(new Entry("word" + i, "definition " + i));
+			}
+			dictionary.sync();
+			System.out.println(names[p] + "\t" + count * 1000000000L / (System.nanoTime() - start));
+			dictionary.close();
+		}
+	}
+	
+	/**
+	 * Full passes of each iterator over a balanced 10M node SplayTree,
+	 * best of five
+	 */
+	private static void traversal() {
+		int nodes = 10000000;
+		ArrayList<Integer> sorted = new ArrayList<Integer>(nodes);
+		for(int i = 0; i < nodes; i++) {
+			sorted.add(i);
+		}
+		SplayTree<Integer> tree = SplayTree.fromSorted(sorted.iterator());
+		sorted = null;
+		String[] names = {"preorder", "in order", "descending", "toArrayList"};
+		System.out.println("pass	nodes/s");
+		for(int p = 0; p < names.length; p++) {
+			long best = Long.MAX_VALUE;
+			for(int run = 0; run < 5; run++) {
+				long start = System.nanoTime();
+				long sum = 0;
+				if(p == 0) {
+					for(SplayTree<Integer>.BinaryNode node : tree) {
+						sum += node.size();
+					}
+				} else if(p == 1) {
+					for(Iterator<Integer> i = tree.inOrderIterator(); i.hasNext();) {
+						sum += i.next();
+					}
+				} else if(p == 2) {
+					for(Iterator<Integer> i = tree.descendingIterator(); i.hasNext();) {
+						sum += i.next();
+					}
+				} else {
+					sum = tree.toArrayList().size();
+				}
+				best = Math.min(best, System.nanoTime() - start);
+				if(sum == 0) {
+					System.out.println();
+				}
+			}
+			System.out.println(names[p] + "\t" + nodes * 1000000000L / best);
+		}
+	}
+	
+	/**
+	 * Memory per node and random finds of 1M int keys in a SplayTree of
+	 * Integers against an IntSplayTree
+	 */
+	private static void primitive() {
+		int keys = 1000000, finds = 5000000;
+		Random random = new Random(3);
+		int[] inserts = new int[keys];
+		int[] lookups = new int[finds];
+		for(int i = 0; i < keys; i++) {
+			inserts[i] = random.nextInt();
+		}
+		for(int i = 0; i < finds; i++) {
+			lookups[i] = inserts[random.nextInt(keys)];
+		}
+		System.out.println("tree\tbytes/node\tfinds/s");
+		
+		long before = usedMemory();
+		SplayTree<Integer> boxed = new SplayTree<Integer>();
+		for(int key : inserts) {
+			boxed.insert(key);
+		}
+		long bytes = usedMemory() - before;
+		long start = System.nanoTime();
+		for(int key : lookups) {
+			boxed.find(key);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println("SplayTree<Integer>\t" + bytes / boxed.size() + "\t" + finds * 1000000000L / elapsed);
+		int size = boxed.size();
+		boxed = null;
+		
+		before = usedMemory();
+		IntSplayTree<Object> unboxed = new IntSplayTree<Object>();
+		for(int key : inserts) {
+			unboxed.insert(key, null);
+		}
+		bytes = usedMemory() - before;
+		start = System.nanoTime();
+		for(int key : lookups) {
+			unboxed.find(key);
+		}
+		elapsed = System.nanoTime() - start;
+		System.out.println("IntSplayTree\t" + bytes / size + "\t" + finds * 1000000000L / elapsed);
+	}
+	
+	/**
+	 * Memory per entry and random finds of 10M Integers in a SplayTree
+	 * against an ArenaSplayTree. The Integers are boxed up front and shared,
+	 * so the figures are the cost of the tree structure alone.
+	 */
+	private static void arena() {
+		int keys = 10000000, finds = 5000000;
+		Random random = new Random(4);
+		Integer[] inserts = new Integer[keys];
+		Integer[] lookups = new Integer[finds];
+		for(int i = 0; i < keys; i++) {
+			inserts[i] = random.nextInt();
+		}
+		for(int i = 0; i < finds; i++) {
+			lookups[i] = inserts[random.nextInt(keys)];
+		}
+		System.out.println("tree\tbytes/entry\tinserts/s\tfinds/s");
+		
+		long before = usedMemory();
+		long start = System.nanoTime();
+		SplayTree<Integer> nodes = new SplayTree<Integer>();
+		for(Integer key : inserts) {
+			nodes.insert(key);
+		}
+		long inserted = System.nanoTime() - start;
+		long bytes = usedMemory() - before;
+		start = System.nanoTime();
+		for(Integer key : lookups) {
+			nodes.find(key);
+		}
+		long elapsed = System.nanoTime() - start;
+		int size = nodes.size();
+		System.out.println("SplayTree\t" + bytes / size + "\t" + size * 1000000000L / inserted + "\t" + finds * 1000000000L / elapsed);
+		nodes = null;
+		
+		before = usedMemory();
+		start = System.nanoTime();
+		ArenaSplayTree<Integer> arena = new ArenaSplayTree<Integer>();
+		for(Integer key : inserts) {
+			arena.insert(key);
+		}
+		inserted = System.nanoTime() - start;
+		bytes = usedMemory() - before;
+		start = System.nanoTime();
+		for(Integer key : lookups) {
+			arena.find(key);
+		}
+		elapsed = System.nanoTime() - start;
+		System.out.println("ArenaSplayTree\t" + bytes / size + "\t" + size * 1000000000L / inserted + "\t" + finds * 1000000000L / elapsed);
+	}
+	
+	/**
+	 * Heap per entry of 1M synthetic dictionary entries as Entry and as
+	 * CompactEntry with and without deduplication. Words are 4 to 12
+	 * random letters; definitions are 3 to 12 words of a 5000 word Zipfian
+	 * vocabulary, one entry in five has a second definition and one
+	 * definition in five is a short cross reference such as "plural of x"
+	 * to a common word, as in real dictionaries.
+	 */
+	private static void compact() {
+		int count = 1000000;
+		Random random = new Random(5);
+		String[] vocabulary = new String[5000];
+		for(int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = randomWord(random, 2, 9);
+		}
+		String[] references = {"plural of ", "alternative spelling of ", "past tense of ", "obsolete form of "};
+		int[] common = zipf(vocabulary.length, 1.0, count * 2, random);
+		String[] words = new String[count];
+		String[][] definitions = new String[count][];
+		for(int i = 0; i < count; i++) {
+			words[i] = randomWord(random, 4, 12) + i;
+			definitions[i] = new String[random.nextInt(5) == 0 ? 2 : 1];
+			for(int d = 0; d < definitions[i].length; d++) {
+				if(random.nextInt(5) == 0) {
+					definitions[i][d] = references[random.nextInt(references.length)] + vocabulary[common[i * 2 + d] % 200];
+				} else {
+					StringBuilder definition = new StringBuilder();
+					for(int w = 3 + random.nextInt(10); w > 0; w--) {
+						definition.append(vocabulary[common[random.nextInt(common.length)]]).append(w > 1 ? ' ' : '.');
+					}
+					definitions[i][d] = definition.toString();
+				}
+			}
+		}
+		System.out.println("entry\tbytes/entry");
+		
+		Object[] entries = new Object[count];
+		long before = usedMemory();
+		for(int i = 0; i < count; i++) {
+			// copy the characters so each Entry owns its strings, as when loaded
+			Entry entry = new Entry(new String(words[i].toCharArray()), new String(definitions[i][0].toCharArray()));
+			for(int d = 1; d < definitions[i].length; d++) {
+				entry.insert(new Entry(words[i], new String(definitions[i][d].toCharArray())));
+			}
+			entries[i] = entry;
+		}
+		System.out.println("Entry\t" + (usedMemory() - before) / count);
+		
+		for(int dedup = 0; dedup < 2; dedup++) {
+			Arrays.fill(entries, null);
+			before = usedMemory();
+			DefinitionArena arena = new DefinitionArena(dedup == 1);
+			for(int i = 0; i < count; i++) {
+				CompactEntry entry = new CompactEntry(words[i], definitions[i][0], arena);
+				for(int d = 1; d < definitions[i].length; d++) {
+					entry.insert(new CompactEntry(words[i], definitions[i][d], arena));
+				}
+				entries[i] = entry;
+			}
+			System.out.println((dedup == 1 ? "CompactEntry, deduplicated\t" : "CompactEntry\t") + (usedMemory() - before) / count);
+		}
+	}
+	
+	/**
+	 * Random batches of new keys inserted into, then looked up in, a 1M
+	 * element SplayTree one at a time against insertAll and findAll, best
+	 * of three
+	 */
+	private static void batch() {
+		int keys = 1000000;
+		ArrayList<Integer> existing = new ArrayList<Integer>(keys);
+		for(int i = 0; i < keys; i++) {
+			existing.add(i * 2);
+		}
+		Random random = new Random(6);
+		System.out.println("batch\tinsert ms\tinsertAll ms\tfind ms\tfindAll ms");
+		for(int size : new int[] {10000, 100000, 1000000}) {
+			ArrayList<Integer> batch = new ArrayList<Integer>(size);
+			for(int i = 0; i < size; i++) {
+				batch.add(random.nextInt(keys * 2) | 1);
+			}
+			long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+			for(int run = 0; run < 3; run++) {
+				SplayTree<Integer> single = SplayTree.fromSorted(existing.iterator());
+				long start = System.nanoTime();
+				for(Integer key : batch) {
+					single.insert(key);
+				}
+				best[0] = Math.min(best[0], System.nanoTime() - start);
+				start = System.nanoTime();
+				for(Integer key : batch) {
+					single.find(key);
+				}
+				best[2] = Math.min(best[2], System.nanoTime() - start);
+				
+				SplayTree<Integer> batched = SplayTree.fromSorted(existing.iterator());
+				start = System.nanoTime();
+				batched.insertAll(batch);
+				best[1] = Math.min(best[1], System.nanoTime() - start);
+				start = System.nanoTime();
+				batched.findAll(batch);
+				best[3] = Math.min(best[3], System.nanoTime() - start);
+			}
+			System.out.println(size + "\t" + best[0] / 1000000 + "\t" + best[1] / 1000000 + "\t" + best[2] / 1000000 + "\t" + best[3] / 1000000);
+		}
+	}
+	
+	/**
+	 * Zipfian lookups of 1M keys through a capacity bounded SplayTree that
+	 * loads missing keys, against an LRU LinkedHashMap of the same capacity
+	 */
+	private static void cache() {
+		int keys = 1000000, lookups = 3000000;
+		int[] requests = zipf(keys, 0.99, lookups, new Random(8));
+		System.out.println("capacity\tsplay hit %\tsplay lookups/s\tLRU hit %\tLRU lookups/s");
+		for(final int capacity : new int[] {1000, 10000, 100000}) {
+			SplayTree<Integer> tree = new SplayTree<Integer>();
+			tree.setCapacity(capacity);
+			int hits = 0;
+			long start = System.nanoTime();
+			for(int key : requests) {
+				if(tree.find(key) != null) {
+					hits++;
+				} else {
+					tree.insert(key);
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+			
+			LinkedHashMap<Integer, Integer> lru = new LinkedHashMap<Integer, Integer>(capacity * 2, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				
+				protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+					return size() > capacity;
+				}
+			};
+			int lruHits = 0;
+			start = System.nanoTime();
+			for(int key : requests) {
+				if(lru.get(key) != null) {
+					lruHits++;
+				} else {
+					lru.put(key, key);
+				}
+			}
+			long lruElapsed = System.nanoTime() - start;
+			System.out.println(capacity + "\t" + hits * 100L / lookups + "\t" + lookups * 1000000000L / elapsed
+					+ "\t" + lruHits * 100L / lookups + "\t" + lookups * 1000000000L / lruElapsed);
+		}
+	}
+	
+	/**
+	 * Zipfian finds by word, one in ten of them a miss, against a SplayTree
+	 * of 200000 entries with and without a hash index on Entry.WORD, and
+	 * the cost of the index to inserts and removes
+	 */
+	private static void hashIndex() {
+		int words = 200000, finds = 3000000;
+		Random random = new Random(9);
+		String[] vocabulary = new String[words];
+		String[] missing = new String[words];
+		for(int i = 0; i < words; i++) {
+			vocabulary[i] = randomWord(random, 4, 12);
+			missing[i] = vocabulary[i] + "_";
+		}
+		System.out.println("skew\tsplay finds/s\tindexed finds/s");
+		for(double exponent : new double[] {0.8, 1.0, 1.2}) {
+			int[] requests = zipf(words, exponent, finds, new Random(10));
+			long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+			for(int round = 0; round < 3; round++) {
+				for(int mode = 0; mode < 2; mode++) {
+					SplayTree<Entry> tree = new SplayTree<Entry>();
+					for(String word : vocabulary) {
+						tree.insert(new Entry(word, "definition"));
+					}
+					if(mode == 1) {
+						tree.setHashIndex(Entry.WORD);
+					}
+					long start = System.nanoTime();
+					for(int i = 0; i < finds; i++) {
+						String word = i % 10 == 0 ? missing[requests[i]] : vocabulary[requests[i]];
+						tree.find(word, Entry.WORD);
+					}
+					best[mode] = Math.min(best[mode], System.nanoTime() - start);
+				}
+			}
+			System.out.println(exponent + "\t" + finds * 1000000000L / best[0] + "\t" + finds * 1000000000L / best[1]);
+		}
+		
+		System.out.println("index\tinserts/s\tremoves/s");
+		for(int mode = 0; mode < 2; mode++) {
+			long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+			for(int round = 0; round < 3; round++) {
+				SplayTree<Entry> tree = new SplayTree<Entry>();
+				if(mode == 1) {
+					tree.setHashIndex(Entry.WORD);
+				}
+				long start = System.nanoTime();
+				for(String word : vocabulary) {
+					tree.insert(new Entry(word, "definition"));
+				}
+				best[0] = Math.min(best[0], System.nanoTime() - start);
+				start = System.nanoTime();
+				for(String word : vocabulary) {
+					tree.remove(new Entry(word, ""));
+				}
+				best[1] = Math.min(best[1], System.nanoTime() - start);
+			}
+			System.out.println((mode == 1 ? "on" : "off") + "\t" + words * 1000000000L / best[0] + "\t" + words * 1000000000L / best[1]);
+		}
+	}
+	
+	/**
+	 * Finds by word, uniform and Zipfian, against a SplayTree of 200000
+	 * entries splaying and peeking, and against the FrozenDictionary of it,
+	 * and one in order pass over each
+	 */
+	private static void frozen() {
+		int words = 200000, finds = 3000000;
+		Random random = new Random(11);
+		SplayTree<Entry> tree = new SplayTree<Entry>();
+		String[] vocabulary = new String[words];
+		for(int i = 0; i < words; i++) {
+			vocabulary[i] = randomWord(random, 4, 12);
+			tree.insert(new Entry(vocabulary[i], "definition"));
+		}
+		FrozenDictionary<Entry> frozen = tree.freeze();
+		System.out.println("keys\tsplay finds/s\tpeek finds/s\tfrozen finds/s");
+		for(double exponent : new double[] {0, 1.0}) {
+			int[] requests = exponent == 0 ? new int[finds] : zipf(words, exponent, finds, new Random(12));
+			if(exponent == 0) {
+				for(int i = 0; i < finds; i++) {
+					requests[i] = random.nextInt(words);
+				}
+			}
+			long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+			for(int round = 0; round < 3; round++) {
+				for(int mode = 0; mode < 3; mode++) {
+					long start = System.nanoTime();
+					for(int i = 0; i < finds; i++) {
+						String word = vocabulary[requests[i]];
+						if(mode == 0) {
+							tree.find(word, Entry.WORD);
+						} else if(mode == 1) {
+							tree.peek(word, Entry.WORD);
+						} else {
+							frozen.find(word, Entry.WORD);
+						}
+					}
+					best[mode] = Math.min(best[mode], System.nanoTime() - start);
+				}
+			}
+			System.out.println((exponent == 0 ? "uniform" : "zipf " + exponent) + "\t" + finds * 1000000000L / best[0]
+					+ "\t" + finds * 1000000000L / best[1] + "\t" + finds * 1000000000L / best[2]);
+		}
+		
+		long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+		int count = 0;
+		for(int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for(Iterator<Entry> it = tree.inOrderIterator(); it.hasNext(); it.next()) {
+				count++;
+			}
+			best[0] = Math.min(best[0], System.nanoTime() - start);
+			start = System.nanoTime();
+			for(Iterator<Entry> it = frozen.inOrderIterator(); it.hasNext(); it.next()) {
+				count--;
+			}
+			best[1] = Math.min(best[1], System.nanoTime() - start);
+		}
+		System.out.println("in order pass ms\t" + best[0] / 1000000 + "\t\t" + best[1] / 1000000 + (count != 0 ? "\tmismatch" : ""));
+	}
+	
+	private static String randomWord(Random random, int min, int max) {
+		char[] letters = new char[min + random.nextInt(max - min + 1)];
+		for(int i = 0; i < letters.length; i++) {
+			letters[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(letters);
+	}
+	
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * Draws keys from a Zipfian distribution over 0 to n - 1, key 0 being
+	 * the most popular
+	 * 
+	 * @param n	number of distinct keys
+	 * @param exponent	skew of the distribution
+	 * @param count	number of keys to draw
+	 * @return 	the keys drawn
+	 */
+	private static int[] zipf(int n, double exponent, int count, Random random) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for(int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		int[] keys = new int[count];
+		for(int i = 0; i < count; i++) {
+			int key = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+			keys[i] = Math.min(key < 0 ? -key - 1 : key, n - 1);
+		}
+		return keys;
+	}
+	
+	/**
+	 * Runs the operation on random keys from the given number of threads
+	 * 
+	 * @return 	operations per second across all threads
+	 */
+	private static long run(int threads, final Operation operation) throws InterruptedException {
+		final AtomicLong total = new AtomicLong();
+		final long end = System.currentTimeMillis() + DURATION;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			final long seed = t;
+			workers[t] = new Thread() {
+				public void run() {
+					Random random = new Random(seed);
+					long count = 0;
+					while((count & 1023) != 0 || System.currentTimeMillis() < end) {
+						operation.run(random.nextInt(KEYS), random.nextInt(100));
+						count++;
+					}
+					total.addAndGet(count);
+				}
+			};
+			workers[t].start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		return total.get() * 1000 / DURATION;
+	}
+}
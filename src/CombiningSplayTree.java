@@ -0,0 +1,212 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe front end to a single SplayTree using flat combining.
+ * Callers publish their operation to a queue; whichever caller gets the
+ * lock becomes the combiner and applies queued operations in a batch while
+ * the other callers wait for their results. One thread touching the tree
+ * at a time keeps the splay tree's locality, and the lock is handed over
+ * once per batch instead of once per operation.
+ * 
+ * Waiting uses ReentrantLock and LockSupport rather than monitors, so
+ * virtual threads can be callers without pinning their carrier.
+ */
+public class CombiningSplayTree<T extends Comparable<? super T>> {
+	private static final int FIND = 0, FIND_KEY = 1, INSERT = 2, REMOVE = 3, SIZE = 4;
+	private static final int MAX_BATCH = 1024;
+	
+	private final SplayTree<T> tree;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ConcurrentLinkedQueue<request> queue = new ConcurrentLinkedQueue<request>();
+	
+	/**
+	 * Constructs a CombiningSplayTree around a new, empty SplayTree
+	 */
+	public CombiningSplayTree() {
+		this(new SplayTree<T>());
+	}
+	
+	/**
+	 * Constructs a CombiningSplayTree around an existing SplayTree. The tree
+	 * must not be used directly afterwards.
+	 * 
+	 * @param tree	the SplayTree to apply operations to
+	 */
+	public CombiningSplayTree(SplayTree<T> tree) {
+		if(tree == null) {
+			throw new IllegalArgumentException();
+		}
+		this.tree = tree;
+	}
+	
+	/**
+	 * Inserts the item, see SplayTree.insert
+	 * 
+	 * @param item	the item to be inserted
+	 * @return 	true if the tree was modified, false if not
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean insert(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return (Boolean) execute(new request(INSERT, item, null));
+	}
+	
+	/**
+	 * Removes the item, see SplayTree.remove
+	 * 
+	 * @param item	the item to be removed
+	 * @return 	true if remove successful; false if not
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean remove(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return (Boolean) execute(new request(REMOVE, item, null));
+	}
+	
+	/**
+	 * Finds the item, see SplayTree.find
+	 * 
+	 * @param item	item to be found
+	 * @return 	pointer to item if found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	@SuppressWarnings("unchecked")
+	public T find(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return (T) execute(new request(FIND, item, null));
+	}
+	
+	/**
+	 * Finds an element by its key, see SplayTree.find(K, KeyExtractor)
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return 	pointer to the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	@SuppressWarnings("unchecked")
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return (T) execute(new request(FIND_KEY, key, extractor));
+	}
+	
+	/**
+	 * Method to determine the size of the tree
+	 * 
+	 * @return 	size of the tree
+	 */
+	public int size() {
+		return (Integer) execute(new request(SIZE, null, null));
+	}
+	
+	/**
+	 * Publishes the request and waits until it has been applied, combining
+	 * other callers' requests whenever the lock is free
+	 * 
+	 * @param request	the request to publish
+	 * @return 	the result of the request
+	 */
+	private Object execute(request request) {
+		queue.add(request);
+		while(!request.done) {
+			if(lock.tryLock()) {
+				try {
+					combine(request);
+				} finally {
+					lock.unlock();
+					// hand the lock over to a waiter that arrived during the batch
+					request next = queue.peek();
+					if(next != null) {
+						LockSupport.unpark(next.thread);
+					}
+				}
+			} else {
+				LockSupport.park(this);
+			}
+		}
+		if(request.failure instanceof RuntimeException) {
+			throw (RuntimeException) request.failure;
+		}
+		if(request.failure != null) {
+			// an Error thrown on the combiner's stack, not this caller's
+			throw new IllegalStateException("Operation failed in the combining thread", request.failure);
+		}
+		return request.result;
+	}
+	
+	/**
+	 * Applies queued requests until the queue is empty, or until the batch
+	 * limit is reached once the combiner's own request is done
+	 * 
+	 * @param own	the combiner's own request
+	 */
+	private void combine(request own) {
+		int count = 0;
+		request request;
+		while((request = queue.poll()) != null) {
+			try {
+				request.result = apply(request);
+			} catch(Throwable e) {
+				request.failure = e;
+			} finally {
+				request.done = true;
+				if(request != own) {
+					LockSupport.unpark(request.thread);
+				}
+			}
+			if(++count >= MAX_BATCH && own.done) {
+				break;
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Object apply(request request) {
+		switch(request.op) {
+		case FIND:
+			return tree.find((T) request.key);
+		case FIND_KEY:
+			return findKey(request.key, request.extractor);
+		case INSERT:
+			return tree.insert((T) request.key);
+		case REMOVE:
+			return tree.remove((T) request.key);
+		default:
+			return tree.size();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <K extends Comparable<? super K>> T findKey(Object key, KeyExtractor<?, ?> extractor) {
+		return tree.find((K) key, (KeyExtractor<K, T>) extractor);
+	}
+	
+	/**
+	 * A published operation and, once done, its result
+	 */
+	private static class request {
+		private final int op;
+		private final Object key;
+		private final KeyExtractor<?, ?> extractor;
+		private final Thread thread = Thread.currentThread();
+		private Object result;
+		private Throwable failure;
+		private volatile boolean done;
+		
+		public request(int op, Object key, KeyExtractor<?, ?> extractor) {
+			this.op = op;
+			this.key = key;
+			this.extractor = extractor;
+		}
+	}
+}
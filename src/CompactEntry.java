@@ -0,0 +1,113 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * A compact alternative to Entry for large dictionaries. The word is kept
+ * as UTF-8 bytes and the definitions as offsets into a DefinitionArena
+ * shared by all the entries, so an entry with one definition is one small
+ * object and one byte array. Words order by their UTF-8 bytes as
+ * CompactKey orders them, which is the order of String.compareTo except for
+ * words with supplementary characters.
+ * 
+ */
+public class CompactEntry extends CompactKey implements Insertable {
+	/**
+	 * Key extractor for looking a CompactEntry up by its word,
+	 * e.g. tree.find(CompactKey.of("word"), CompactEntry.WORD). An entry is
+	 * its own key, so nothing is allocated or decoded per comparison.
+	 */
+	public static final KeyExtractor<CompactKey, CompactEntry> WORD = new KeyExtractor<CompactKey, CompactEntry>() {
+		public CompactKey keyOf(CompactEntry element) {
+			return element;
+		}
+	};
+	
+	private static final int[] NONE = new int[0];
+	
+	private final DefinitionArena arena;
+	private final int definition;
+	private int[] more = NONE;
+	private int moreCount = 0;
+	
+	public CompactEntry(String word, String definition, DefinitionArena arena) {
+		super(word.getBytes(StandardCharsets.UTF_8));
+		this.arena = arena;
+		this.definition = arena.add(definition);
+	}
+	
+	private CompactEntry(byte[] word) {
+		super(word);
+		this.arena = null;
+		this.definition = -1;
+	}
+	
+	/**
+	 * Makes an entry with no definitions to find or remove a word with,
+	 * e.g. tree.find(CompactEntry.probe("word"))
+	 * 
+	 * @param word	the word to look for
+	 * @return 	a CompactEntry for comparing only
+	 */
+	public static CompactEntry probe(String word) {
+		return new CompactEntry(word.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Copies an Entry into arena
+	 * 
+	 * @param entry	the Entry to copy
+	 * @param arena	where to store its definitions
+	 * @return 	a CompactEntry with the same word and definitions
+	 */
+	public static CompactEntry of(Entry entry, DefinitionArena arena) {
+		ArrayList<String> definitions = entry.getDefinitions();
+		CompactEntry compact = new CompactEntry(entry.getEntry(), definitions.get(0), arena);
+		for(int i = 1; i < definitions.size(); i++) {
+			compact.add(arena.add(definitions.get(i)));
+		}
+		return compact;
+	}
+	
+	/**
+	 * Decodes the definitions from the arena
+	 * 
+	 * @return 	a new list of the definitions; empty for a probe
+	 */
+	public ArrayList<String> getDefinitions() {
+		ArrayList<String> definitions = new ArrayList<String>(1 + moreCount);
+		if(definition != -1) {
+			definitions.add(arena.get(definition));
+		}
+		for(int i = 0; i < moreCount; i++) {
+			definitions.add(arena.get(more[i]));
+		}
+		return definitions;
+	}
+	
+	public boolean insert(Object o) {
+		CompactEntry item = (CompactEntry) o;
+		if(item.arena == arena && item.definition != -1) {
+			add(item.definition);
+			for(int i = 0; i < item.moreCount; i++) {
+				add(item.more[i]);
+			}
+		} else {
+			for(String s : item.getDefinitions()) {
+				add(arena.add(s));
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Appends a definition offset, doubling the array when it is full
+	 */
+	private void add(int offset) {
+		if(moreCount == more.length) {
+			more = Arrays.copyOf(more, Math.max(2, moreCount * 2));
+		}
+		more[moreCount++] = offset;
+	}
+}
@@ -0,0 +1,56 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A word kept as UTF-8 bytes. Keys order byte by byte as unsigned values,
+ * which is the order of their code points. CompactEntry extends CompactKey,
+ * so every entry is its own key and CompactEntry.WORD compares the stored
+ * bytes without allocating or decoding anything.
+ * 
+ */
+public class CompactKey implements Comparable<CompactKey> {
+	final byte[] word;
+	
+	CompactKey(byte[] word) {
+		this.word = word;
+	}
+	
+	/**
+	 * Makes the key for a word, e.g.
+	 * tree.find(CompactKey.of("word"), CompactEntry.WORD)
+	 * 
+	 * @param word	the word
+	 * @return 	a CompactKey to look the word up with
+	 */
+	public static CompactKey of(String word) {
+		return new CompactKey(word.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	public int compareTo(CompactKey key) {
+		byte[] other = key.word;
+		int n = Math.min(word.length, other.length);
+		for(int i = 0; i < n; i++) {
+			int compare = (word[i] & 0xFF) - (other[i] & 0xFF);
+			if(compare != 0) {
+				return compare;
+			}
+		}
+		return word.length - other.length;
+	}
+	
+	public boolean equals(Object o) {
+		return o instanceof CompactKey && Arrays.equals(word, ((CompactKey) o).word);
+	}
+	
+	public int hashCode() {
+		return Arrays.hashCode(word);
+	}
+	
+	public String getEntry() {
+		return new String(word, StandardCharsets.UTF_8);
+	}
+	
+	public String toString() {
+		return getEntry();
+	}
+}
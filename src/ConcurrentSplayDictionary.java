@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe dictionary that spreads its elements over several
+ * independently locked SplayTree shards by hash code, so operations on
+ * different shards run in parallel. Elements that compare equal must have
+ * equal hash codes.
+ */
+public class ConcurrentSplayDictionary<T extends Comparable<? super T>> implements Iterable<T> {
+	private static final int PAGE_SIZE = 256;
+	
+	private final SplayTree<T>[] shards;
+	private final ReentrantLock[] locks;
+	private final int mask;
+	
+	/**
+	 * Constructs a ConcurrentSplayDictionary with four shards per available processor
+	 */
+	public ConcurrentSplayDictionary() {
+		this(4 * Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructs a ConcurrentSplayDictionary
+	 * 
+	 * @param shardCount	minimum number of shards; rounded up to a power of two
+	 * @exception	IllegalArgumentException if shardCount is less than 1
+	 */
+	public ConcurrentSplayDictionary(int shardCount) {
+		if(shardCount < 1) {
+			throw new IllegalArgumentException();
+		}
+		int count = Integer.highestOneBit(shardCount);
+		if(count < shardCount) {
+			count <<= 1;
+		}
+		shards = newShards(count);
+		locks = new ReentrantLock[count];
+		for(int i = 0; i < count; i++) {
+			shards[i] = new SplayTree<T>();
+			locks[i] = new ReentrantLock();
+		}
+		mask = count - 1;
+	}
+	
+	/**
+	 * Inserts the item into its shard, merging it into an equal
+	 * Insertable element if one is present
+	 * 
+	 * @param item	the item to be inserted
+	 * @return 	true if the dictionary was modified, false if not
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean insert(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		int shard = shardOf(item.hashCode());
+		locks[shard].lock();
+		try {
+			return shards[shard].insert(item);
+		} finally {
+			locks[shard].unlock();
+		}
+	}
+	
+	/**
+	 * Removes the provided item from its shard
+	 * 
+	 * @param item	the item to be removed
+	 * @return 	true if remove successful; false if not
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public boolean remove(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		int shard = shardOf(item.hashCode());
+		locks[shard].lock();
+		try {
+			return shards[shard].remove(item);
+		} finally {
+			locks[shard].unlock();
+		}
+	}
+	
+	/**
+	 * Find method that returns a pointer to the item provided
+	 * 
+	 * @param item	item to be found
+	 * @return 	pointer to item if found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T find(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		int shard = shardOf(item.hashCode());
+		locks[shard].lock();
+		try {
+			return shards[shard].find(item);
+		} finally {
+			locks[shard].unlock();
+		}
+	}
+	
+	/**
+	 * Find method that looks an element up by its key. The key's hash code
+	 * must equal the hash code of the element it belongs to, as it does for
+	 * Entry and Entry.WORD.
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return 	pointer to the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null) {
+			throw new IllegalArgumentException();
+		}
+		int shard = shardOf(key.hashCode());
+		locks[shard].lock();
+		try {
+			return shards[shard].find(key, extractor);
+		} finally {
+			locks[shard].unlock();
+		}
+	}
+	
+	/**
+	 * Checks if the dictionary has an element with the provided key
+	 * 
+	 * @param key	key of the element to look for
+	 * @param extractor	extracts the key from an element
+	 * @return 	true if an element has that key; false if not
+	 */
+	public <K extends Comparable<? super K>> boolean containsKey(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		return find(key, extractor) != null;
+	}
+	
+	/**
+	 * Method to determine the size of the dictionary. Shards are counted one
+	 * at a time, so concurrent updates may or may not be reflected.
+	 * 
+	 * @return 	number of elements in the dictionary
+	 */
+	public int size() {
+		int size = 0;
+		for(int i = 0; i < shards.length; i++) {
+			locks[i].lock();
+			try {
+				size += shards[i].size();
+			} finally {
+				locks[i].unlock();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Checks if the dictionary has no elements
+	 * 
+	 * @return 	true if the dictionary has no elements; false if it has elements
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	/**
+	 * Method to determine the number of shards
+	 * 
+	 * @return 	number of shards
+	 */
+	public int shardCount() {
+		return shards.length;
+	}
+	
+	/**
+	 * Iterator that returns the elements of all shards merged in order. Each
+	 * shard is read a page at a time under its lock, so the iterator never
+	 * blocks writers for long and never throws ConcurrentModificationException;
+	 * elements added or removed while iterating may or may not be returned.
+	 * 
+	 * @return 	an iterator to traverse the elements in order
+	 */
+	public Iterator<T> iterator() {
+		return new mergingIterator();
+	}
+	
+	private int shardOf(int hash) {
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T extends Comparable<? super T>> SplayTree<T>[] newShards(int count) {
+		return new SplayTree[count];
+	}
+	
+	/**
+	 * A cursor over one shard that reads it a page at a time, resuming after
+	 * the last element it returned
+	 */
+	private class shardCursor implements Comparable<shardCursor> {
+		private final int shard;
+		private ArrayList<T> page;
+		private int index;
+		private T last;
+		
+		public shardCursor(int shard) {
+			this.shard = shard;
+		}
+		
+		/**
+		 * Reads the next page of the shard if the current one is used up
+		 * 
+		 * @return 	true if the cursor has a current element; false if the shard is used up
+		 */
+		public boolean fill() {
+			if(page != null && index < page.size()) {
+				return true;
+			}
+			SplayTree<T> tree = shards[shard];
+			locks[shard].lock();
+			try {
+				int from = 0;
+				if(last != null) {
+					from = tree.rank(last);
+					if(tree.find(last) != null) {
+						from++;
+					}
+				}
+				page = tree.subList(from, Math.min(from + PAGE_SIZE, tree.size()));
+			} finally {
+				locks[shard].unlock();
+			}
+			index = 0;
+			return !page.isEmpty();
+		}
+		
+		public T current() {
+			return page.get(index);
+		}
+		
+		public T advance() {
+			last = page.get(index++);
+			return last;
+		}
+		
+		public int compareTo(shardCursor other) {
+			return current().compareTo(other.current());
+		}
+	}
+	
+	/**
+	 * An iterator that merges the in order shard cursors
+	 */
+	private class mergingIterator implements Iterator<T> {
+		private final PriorityQueue<shardCursor> cursors = new PriorityQueue<shardCursor>();
+		
+		public mergingIterator() {
+			for(int i = 0; i < shards.length; i++) {
+				shardCursor cursor = new shardCursor(i);
+				if(cursor.fill()) {
+					cursors.add(cursor);
+				}
+			}
+		}
+		
+		public boolean hasNext() {
+			return !cursors.isEmpty();
+		}
+		
+		public T next() {
+			shardCursor cursor = cursors.poll();
+			if(cursor == null) {
+				throw new NoSuchElementException();
+			}
+			T item = cursor.advance();
+			if(cursor.fill()) {
+				cursors.add(cursor);
+			}
+			return item;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,196 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An append-only store of UTF-8 strings shared by many CompactEntries. Each
+ * string is a varint length followed by its bytes and is addressed by the
+ * offset of its length. Strings are packed into fixed 1MB chunks, so the
+ * store never copies itself to grow and wastes at most the end of a chunk.
+ * With deduplication on, adding a string that is already stored returns the
+ * offset of the stored copy, found through an open addressing table of
+ * offsets hashed by content.
+ * Not thread safe, like SplayTree.
+ * 
+ */
+public class DefinitionArena {
+	private static final int CHUNK_BITS = 20;
+	private static final int CHUNK = 1 << CHUNK_BITS;
+	
+	private byte[][] chunks = new byte[16][];
+	private int chunkCount = 0;
+	private int position = CHUNK;
+	private long length = 0;
+	private int[] table;
+	private int count = 0;
+	
+	/**
+	 * Constructs a DefinitionArena
+	 * 
+	 * @param deduplicate	true to store repeated strings only once
+	 */
+	public DefinitionArena(boolean deduplicate) {
+		if(deduplicate) {
+			table = new int[1 << 10];
+			Arrays.fill(table, -1);
+		}
+	}
+	
+	/**
+	 * Stores a string
+	 * 
+	 * @param s	the string to store
+	 * @return 	the offset to get the string back with
+	 * @exception	IllegalArgumentException if s is null or longer than 1MB in UTF-8
+	 */
+	public int add(String s) {
+		if(s == null) {
+			throw new IllegalArgumentException();
+		}
+		byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+		if(utf8.length > CHUNK - 5) {
+			throw new IllegalArgumentException("String too long: " + utf8.length + " bytes");
+		}
+		if(table == null) {
+			return append(utf8);
+		}
+		int mask = table.length - 1;
+		int i = mix(Arrays.hashCode(utf8)) & mask;
+		while(table[i] != -1) {
+			if(matches(table[i], utf8)) {
+				return table[i];
+			}
+			i = (i + 1) & mask;
+		}
+		int offset = append(utf8);
+		table[i] = offset;
+		if(++count * 4 > table.length * 3) {
+			rehash();
+		}
+		return offset;
+	}
+	
+	/**
+	 * Decodes a stored string
+	 * 
+	 * @param offset	the offset add returned for the string
+	 * @return 	the string
+	 */
+	public String get(int offset) {
+		return new String(chunks[offset >>> CHUNK_BITS], dataAt(offset), lengthAt(offset), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Method to determine how many bytes of strings the DefinitionArena holds
+	 * 
+	 * @return 	bytes used, not counting the unused end of the last chunk
+	 */
+	public long size() {
+		return length;
+	}
+	
+	private int append(byte[] utf8) {
+		if(position + utf8.length + 5 > CHUNK) {
+			if(chunkCount == 1 << (31 - CHUNK_BITS)) {
+				throw new IllegalStateException("DefinitionArena is full");
+			}
+			if(chunkCount == chunks.length) {
+				chunks = Arrays.copyOf(chunks, chunkCount * 2);
+			}
+			chunks[chunkCount++] = new byte[CHUNK];
+			position = 0;
+		}
+		byte[] chunk = chunks[chunkCount - 1];
+		int offset = (chunkCount - 1) << CHUNK_BITS | position;
+		int start = position;
+		int n = utf8.length;
+		while((n & ~0x7F) != 0) {
+			chunk[position++] = (byte) ((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		chunk[position++] = (byte) n;
+		System.arraycopy(utf8, 0, chunk, position, utf8.length);
+		position += utf8.length;
+		length += position - start;
+		return offset;
+	}
+	
+	/**
+	 * Checks if the string stored at offset has exactly the given bytes
+	 */
+	private boolean matches(int offset, byte[] utf8) {
+		int n = lengthAt(offset);
+		if(n != utf8.length) {
+			return false;
+		}
+		byte[] chunk = chunks[offset >>> CHUNK_BITS];
+		int start = dataAt(offset);
+		for(int i = 0; i < n; i++) {
+			if(chunk[start + i] != utf8[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void rehash() {
+		int[] old = table;
+		table = new int[old.length * 2];
+		Arrays.fill(table, -1);
+		int mask = table.length - 1;
+		for(int offset : old) {
+			if(offset != -1) {
+				int i = mix(hashAt(offset)) & mask;
+				while(table[i] != -1) {
+					i = (i + 1) & mask;
+				}
+				table[i] = offset;
+			}
+		}
+	}
+	
+	/**
+	 * Hashes the bytes stored at offset the way Arrays.hashCode would
+	 */
+	private int hashAt(int offset) {
+		int n = lengthAt(offset);
+		byte[] chunk = chunks[offset >>> CHUNK_BITS];
+		int start = dataAt(offset);
+		int hash = 1;
+		for(int i = 0; i < n; i++) {
+			hash = 31 * hash + chunk[start + i];
+		}
+		return hash;
+	}
+	
+	/**
+	 * Reads the varint length of the string stored at offset
+	 */
+	private int lengthAt(int offset) {
+		byte[] chunk = chunks[offset >>> CHUNK_BITS];
+		int i = offset & (CHUNK - 1);
+		int n = 0, shift = 0, b;
+		do {
+			b = chunk[i++];
+			n |= (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return n;
+	}
+	
+	/**
+	 * Returns the position within its chunk of the first byte of the string
+	 * stored at offset, just past its varint length
+	 */
+	private int dataAt(int offset) {
+		byte[] chunk = chunks[offset >>> CHUNK_BITS];
+		int i = offset & (CHUNK - 1);
+		while(chunk[i++] < 0) {
+		}
+		return i;
+	}
+	
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads a dictionary file of word&lt;TAB&gt;definition lines into a
+ * SplayTree of Entry objects. The file is split into chunks at line
+ * boundaries; the chunks are memory-mapped, parsed and sorted in parallel on
+ * a ForkJoinPool, merged pairwise, and the result is bulk-built into a
+ * balanced SplayTree. A word on several lines becomes one Entry with its
+ * definitions in file order, as Entry.insert would merge them.
+ */
+public class DictionaryLoader {
+	/**
+	 * Default number of bytes parsed by one task
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+	
+	private DictionaryLoader() {
+	}
+	
+	/**
+	 * Loads a dictionary file on the common ForkJoinPool
+	 * 
+	 * @param file	the dictionary file
+	 * @return 	a balanced SplayTree with an Entry per word
+	 * @exception	IOException if the file cannot be read or has a line without a tab
+	 */
+	public static SplayTree<Entry> load(Path file) throws IOException {
+		return load(file, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Loads a dictionary file
+	 * 
+	 * @param file	the dictionary file
+	 * @param pool	the pool to parse and sort on
+	 * @param chunkSize	number of bytes parsed by one task
+	 * @return 	a balanced SplayTree with an Entry per word
+	 * @exception	IOException if the file cannot be read or has a line without a tab
+	 */
+	public static SplayTree<Entry> load(Path file, ForkJoinPool pool, int chunkSize) throws IOException {
+		if(chunkSize < 1) {
+			throw new IllegalArgumentException();
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] bounds = chunkBounds(channel, chunkSize);
+			ArrayList<Entry> entries;
+			try {
+				entries = pool.invoke(new chunkTask(channel, bounds, 0, bounds.length - 1));
+			} catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+			return SplayTree.fromSorted(entries.iterator());
+		}
+	}
+	
+	/**
+	 * Splits the file into chunks of about chunkSize bytes that end at line breaks
+	 * 
+	 * @return 	the start of each chunk followed by the end of the file
+	 */
+	private static long[] chunkBounds(FileChannel channel, int chunkSize) throws IOException {
+		long size = channel.size();
+		ArrayList<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long position = 0;
+		while(size - position > chunkSize) {
+			position += chunkSize;
+			// move to just past the next line break
+			boolean found = false;
+			while(!found && position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if(read <= 0) {
+					break;
+				}
+				for(int i = 0; i < read; i++) {
+					if(buffer.get(i) == '\n') {
+						position += i + 1;
+						found = true;
+						break;
+					}
+				}
+				if(!found) {
+					position += read;
+				}
+			}
+			if(position >= size) {
+				break;
+			}
+			bounds.add(position);
+		}
+		bounds.add(size);
+		long[] result = new long[bounds.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+	
+	/**
+	 * Parses one chunk of the file into entries sorted by word
+	 */
+	private static ArrayList<Entry> parse(FileChannel channel, long start, long end) throws IOException {
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		if(end <= start) {
+			return entries;
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		byte[] scratch = new byte[256];
+		int limit = buffer.limit();
+		int lineStart = 0;
+		while(lineStart < limit) {
+			int tab = -1, lineEnd = lineStart;
+			while(lineEnd < limit && buffer.get(lineEnd) != '\n') {
+				if(tab < 0 && buffer.get(lineEnd) == '\t') {
+					tab = lineEnd;
+				}
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if(lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+				lineEnd--;
+			}
+			if(lineEnd > lineStart) {
+				if(tab < 0) {
+					throw new IOException("No tab in line at byte " + (start + lineStart));
+				}
+				int length = Math.max(tab - lineStart, lineEnd - tab - 1);
+				if(scratch.length < length) {
+					scratch = new byte[Math.max(length, scratch.length * 2)];
+				}
+				String word = decode(buffer, lineStart, tab, scratch);
+				String definition = decode(buffer, tab + 1, lineEnd, scratch);
+				entries.add(new Entry(word, definition));
+			}
+			lineStart = next;
+		}
+		// stable, so definitions of a word stay in file order
+		Collections.sort(entries);
+		return merge(entries, new ArrayList<Entry>());
+	}
+	
+	private static String decode(ByteBuffer buffer, int from, int to, byte[] scratch) {
+		buffer.position(from);
+		buffer.get(scratch, 0, to - from);
+		return new String(scratch, 0, to - from, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Merges two lists of entries sorted by word; entries for the same word
+	 * are merged with the first list's definitions first
+	 */
+	private static ArrayList<Entry> merge(ArrayList<Entry> first, ArrayList<Entry> second) {
+		ArrayList<Entry> merged = new ArrayList<Entry>(first.size() + second.size());
+		int i = 0, j = 0;
+		while(i < first.size() || j < second.size()) {
+			Entry next;
+			if(j >= second.size() || (i < first.size() && first.get(i).compareTo(second.get(j)) <= 0)) {
+				next = first.get(i++);
+			} else {
+				next = second.get(j++);
+			}
+			Entry last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if(last != null && last.compareTo(next) == 0) {
+				last.insert(next);
+			} else {
+				merged.add(next);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Parses a range of chunks, splitting it in half until one chunk is left
+	 * and merging the sorted halves on the way back
+	 */
+	private static class chunkTask extends RecursiveTask<ArrayList<Entry>> {
+		private static final long serialVersionUID = 1L;
+		private final FileChannel channel;
+		private final long[] bounds;
+		private final int from, to;
+		
+		public chunkTask(FileChannel channel, long[] bounds, int from, int to) {
+			this.channel = channel;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected ArrayList<Entry> compute() {
+			if(to - from == 1) {
+				try {
+					return parse(channel, bounds[from], bounds[to]);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			chunkTask left = new chunkTask(channel, bounds, from, middle);
+			chunkTask right = new chunkTask(channel, bounds, middle, to);
+			right.fork();
+			ArrayList<Entry> first = left.compute();
+			return merge(first, right.join());
+		}
+	}
+}
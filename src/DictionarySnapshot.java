@@ -0,0 +1,401 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A versioned binary snapshot of a SplayTree of Entry objects. Entries are
+ * stored in word order; each word is front coded against the previous one
+ * and definitions are length-prefixed UTF-8. Every RESTART_INTERVAL-th
+ * word is stored whole and its offset kept in a sparse index at the end of
+ * the file, so an opened snapshot answers lookups straight from a
+ * MappedByteBuffer and only builds a SplayTree when asked to.
+ * 
+ * Layout, all integers big-endian, lengths and counts as unsigned varints:
+ * <pre>
+ * header:  magic int, version int, entry count int, restart interval int,
+ *          index offset int, index count int
+ * entry:   shared prefix length, suffix length, suffix bytes,
+ *          definition count, (definition length, definition bytes)*
+ * index:   offset int of each restart entry
+ * </pre>
+ * A snapshot is limited to 2GB, the most one mapping can hold.
+ */
+public class DictionarySnapshot implements Iterable<Entry> {
+	public static final int MAGIC = 0x53504C59;
+	public static final int VERSION = 1;
+	public static final int RESTART_INTERVAL = 16;
+	private static final int HEADER_SIZE = 24;
+	
+	private final MappedByteBuffer buffer;
+	private final int count;
+	private final int interval;
+	private final int indexOffset;
+	private final int indexCount;
+	
+	private DictionarySnapshot(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a dictionary snapshot");
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported dictionary snapshot version " + buffer.getInt(4));
+		}
+		count = buffer.getInt(8);
+		interval = buffer.getInt(12);
+		indexOffset = buffer.getInt(16);
+		indexCount = buffer.getInt(20);
+		if(count < 0 || interval < 1 || indexOffset < HEADER_SIZE || indexCount < 0
+				|| (long) indexOffset + 4L * indexCount > buffer.limit()) {
+			throw new IOException("Corrupt dictionary snapshot header");
+		}
+	}
+	
+	/**
+	 * Writes the entries of the SplayTree to a snapshot file. The snapshot
+	 * is written next to the file and moved into place, so a reader never
+	 * sees a half written snapshot.
+	 * 
+	 * @param tree	the dictionary to write
+	 * @param file	the snapshot file
+	 * @exception	IOException if the file cannot be written
+	 */
+	public static void write(SplayTree<Entry> tree, Path file) throws IOException {
+		write(tree.inOrderIterator(), file);
+	}
+	
+	/**
+	 * Writes entries in word order to a snapshot file
+	 * 
+	 * @param entries	the entries in ascending word order
+	 * @param file	the snapshot file
+	 * @exception	IOException if the file cannot be written
+	 * @exception	IllegalArgumentException if the entries are not in ascending order
+	 */
+	public static void write(Iterator<Entry> entries, Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			output out = new output(channel, HEADER_SIZE);
+			ArrayList<Integer> index = new ArrayList<Integer>();
+			byte[] previous = new byte[0];
+			String previousWord = null;
+			int count = 0;
+			while(entries.hasNext()) {
+				Entry entry = entries.next();
+				if(previousWord != null && previousWord.compareTo(entry.getEntry()) >= 0) {
+					throw new IllegalArgumentException("Entries are not in ascending order: " + entry.getEntry());
+				}
+				byte[] word = entry.getEntry().getBytes(StandardCharsets.UTF_8);
+				int shared = 0;
+				if(count % RESTART_INTERVAL == 0) {
+					index.add(checkedOffset(out.position()));
+				} else {
+					int max = Math.min(previous.length, word.length);
+					while(shared < max && previous[shared] == word[shared]) {
+						shared++;
+					}
+				}
+				out.writeVarint(shared);
+				out.writeVarint(word.length - shared);
+				out.write(word, shared, word.length - shared);
+				ArrayList<String> definitions = entry.getDefinitions();
+				out.writeVarint(definitions.size());
+				for(int i = 0; i < definitions.size(); i++) {
+					byte[] definition = definitions.get(i).getBytes(StandardCharsets.UTF_8);
+					out.writeVarint(definition.length);
+					out.write(definition, 0, definition.length);
+				}
+				previous = word;
+				previousWord = entry.getEntry();
+				count++;
+			}
+			int indexOffset = checkedOffset(out.position());
+			for(int i = 0; i < index.size(); i++) {
+				out.writeInt(index.get(i));
+			}
+			checkedOffset(out.position());
+			out.flush();
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(RESTART_INTERVAL)
+					.putInt(indexOffset).putInt(index.size());
+			header.flip();
+			while(header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			channel.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private static int checkedOffset(long position) throws IOException {
+		if(position > Integer.MAX_VALUE) {
+			throw new IOException("Dictionary snapshot larger than 2GB");
+		}
+		return (int) position;
+	}
+	
+	/**
+	 * Opens a snapshot file by mapping it into memory
+	 * 
+	 * @param file	the snapshot file
+	 * @return 	the opened snapshot
+	 * @exception	IOException if the file cannot be read or is not a snapshot
+	 */
+	public static DictionarySnapshot open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Dictionary snapshot larger than 2GB");
+			}
+			return new DictionarySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Method to determine the number of entries in the snapshot
+	 * 
+	 * @return 	number of entries
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Looks a word up in the mapped snapshot: a binary search over the
+	 * restart words followed by a scan of at most one restart interval.
+	 * Safe to call from any number of threads.
+	 * 
+	 * @param word	the word to look up
+	 * @return 	a new Entry with the word's definitions; null if not found
+	 * @exception	IllegalArgumentException if word is null
+	 */
+	public Entry find(String word) {
+		if(word == null) {
+			throw new IllegalArgumentException();
+		}
+		byte[] key = word.getBytes(StandardCharsets.UTF_8);
+		cursor cursor = new cursor();
+		// last restart whose word is not greater than the one looked for
+		int low = 0, high = indexCount - 1, block = -1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			cursor.seek(buffer.getInt(indexOffset + 4 * middle));
+			cursor.nextWord();
+			int compare = cursor.word().compareTo(word);
+			if(compare == 0) {
+				return cursor.entry();
+			} else if(compare < 0) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if(block < 0) {
+			return null;
+		}
+		cursor.seek(buffer.getInt(indexOffset + 4 * block));
+		int remaining = Math.min(interval, count - block * interval);
+		for(int i = 0; i < remaining; i++) {
+			cursor.nextWord();
+			if(cursor.wordEquals(key)) {
+				return cursor.entry();
+			}
+			cursor.skipDefinitions();
+		}
+		return null;
+	}
+	
+	/**
+	 * Iterator that decodes the entries in word order
+	 * 
+	 * @return 	an iterator over new Entry objects in word order
+	 */
+	public Iterator<Entry> iterator() {
+		return new Iterator<Entry>() {
+			private final cursor cursor = new cursor();
+			private int returned = 0;
+			
+			{
+				cursor.seek(HEADER_SIZE);
+			}
+			
+			public boolean hasNext() {
+				return returned < count;
+			}
+			
+			public Entry next() {
+				if(returned >= count) {
+					throw new NoSuchElementException();
+				}
+				returned++;
+				cursor.nextWord();
+				return cursor.entry();
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Builds a balanced SplayTree from the snapshot in linear time
+	 * 
+	 * @return 	a new SplayTree holding the snapshot's entries
+	 */
+	public SplayTree<Entry> toSplayTree() {
+		return SplayTree.fromSorted(iterator());
+	}
+	
+	/**
+	 * Reads entries from a private view of the mapping, rebuilding front
+	 * coded words as it goes
+	 */
+	private class cursor {
+		private final ByteBuffer in = buffer.duplicate();
+		private byte[] word = new byte[64];
+		private int wordLength;
+		
+		public void seek(int offset) {
+			in.position(offset);
+			wordLength = 0;
+		}
+		
+		public void nextWord() {
+			int shared = readVarint();
+			int suffix = readVarint();
+			if(word.length < shared + suffix) {
+				byte[] grown = new byte[Math.max(shared + suffix, word.length * 2)];
+				System.arraycopy(word, 0, grown, 0, shared);
+				word = grown;
+			}
+			in.get(word, shared, suffix);
+			wordLength = shared + suffix;
+		}
+		
+		public String word() {
+			return new String(word, 0, wordLength, StandardCharsets.UTF_8);
+		}
+		
+		public boolean wordEquals(byte[] key) {
+			if(key.length != wordLength) {
+				return false;
+			}
+			for(int i = 0; i < wordLength; i++) {
+				if(key[i] != word[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		public void skipDefinitions() {
+			int definitions = readVarint();
+			for(int i = 0; i < definitions; i++) {
+				int length = readVarint();
+				in.position(in.position() + length);
+			}
+		}
+		
+		public Entry entry() {
+			int definitions = readVarint();
+			Entry entry = null;
+			if(definitions == 0) {
+				entry = new Entry(word(), null);
+				entry.getDefinitions().clear();
+			}
+			for(int i = 0; i < definitions; i++) {
+				byte[] bytes = new byte[readVarint()];
+				in.get(bytes);
+				String definition = new String(bytes, StandardCharsets.UTF_8);
+				if(entry == null) {
+					entry = new Entry(word(), definition);
+				} else {
+					entry.getDefinitions().add(definition);
+				}
+			}
+			return entry;
+		}
+		
+		private int readVarint() {
+			int value = 0;
+			for(int shift = 0; ; shift += 7) {
+				byte b = in.get();
+				value |= (b & 0x7F) << shift;
+				if(b >= 0) {
+					return value;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A buffered writer over a FileChannel that keeps track of its position
+	 */
+	private static class output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+		private long position;
+		
+		public output(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+		
+		public long position() {
+			return position + buffer.position();
+		}
+		
+		public void writeVarint(int value) throws IOException {
+			while((value & ~0x7F) != 0) {
+				writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte(value);
+		}
+		
+		public void writeInt(int value) throws IOException {
+			if(buffer.remaining() < 4) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+		
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while(length > 0) {
+				if(!buffer.hasRemaining()) {
+					flush();
+				}
+				int chunk = Math.min(length, buffer.remaining());
+				buffer.put(bytes, offset, chunk);
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+		
+		private void writeByte(int value) throws IOException {
+			if(!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put((byte) value);
+		}
+		
+		public void flush() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,285 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A SplayTree of Entry objects kept durable in a directory by a
+ * DictionarySnapshot plus a WriteAheadLog of the inserts and removes made
+ * since. Files come in generations: dictionary.N.snapshot holds the state
+ * when generation N started and dictionary.N.log the changes after it.
+ * Opening loads the newest snapshot and replays its log; compacting writes
+ * the next generation's snapshot and starts an empty log for it.
+ * 
+ * Changes are appended to the log and then applied to the tree under one
+ * lock, so a change the log refuses never reaches the tree, and committed
+ * outside it, so concurrent writers share log syncs.
+ */
+public class DurableDictionary implements Closeable {
+	private static final byte INSERT = 1, REMOVE = 2;
+	private static final String PREFIX = "dictionary.";
+	
+	private final Path directory;
+	private final WriteAheadLog.SyncPolicy policy;
+	private final ReentrantLock lock = new ReentrantLock();
+	private SplayTree<Entry> tree;
+	private WriteAheadLog log;
+	private long generation;
+	
+	private DurableDictionary(Path directory, WriteAheadLog.SyncPolicy policy) {
+		this.directory = directory;
+		this.policy = policy;
+	}
+	
+	/**
+	 * Opens the dictionary stored in a directory, creating an empty one if
+	 * the directory holds none
+	 * 
+	 * @param directory	directory of the snapshot and log files
+	 * @param policy	when to force logged changes to disk
+	 * @return 	the opened dictionary
+	 * @exception	IOException if the files cannot be read or written
+	 */
+	public static DurableDictionary open(Path directory, WriteAheadLog.SyncPolicy policy) throws IOException {
+		if(directory == null || policy == null) {
+			throw new IllegalArgumentException();
+		}
+		Files.createDirectories(directory);
+		DurableDictionary dictionary = new DurableDictionary(directory, policy);
+		dictionary.recover();
+		return dictionary;
+	}
+	
+	private void recover() throws IOException {
+		generation = 0;
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*.snapshot")) {
+			for(Path file : files) {
+				generation = Math.max(generation, generationOf(file));
+			}
+		}
+		Path snapshot = snapshotFile(generation);
+		tree = Files.exists(snapshot) ? DictionarySnapshot.open(snapshot).toSplayTree() : new SplayTree<Entry>();
+		log = WriteAheadLog.open(logFile(generation), policy, new WriteAheadLog.Replayer() {
+			public void replay(byte type, ByteBuffer payload) throws IOException {
+				apply(type, payload);
+			}
+		});
+		deleteOlderGenerations();
+	}
+	
+	/**
+	 * Inserts an entry, merging its definitions into the existing entry for
+	 * the word if there is one
+	 * 
+	 * @param entry	the entry to insert
+	 * @return 	true if the dictionary was modified, false if not
+	 * @exception	IOException if the change cannot be logged
+	 */
+	public boolean insert(Entry entry) throws IOException {
+		if(entry == null) {
+			throw new IllegalArgumentException();
+		}
+		byte[] record = encodeEntry(entry);
+		long sequence;
+		boolean modified;
+		lock.lock();
+		try {
+			// log first: insert merges into the existing entry in place, which cannot be undone
+			sequence = log.append(INSERT, record);
+			modified = tree.insert(entry);
+		} finally {
+			lock.unlock();
+		}
+		log.commit(sequence);
+		return modified;
+	}
+	
+	/**
+	 * Removes the entry for a word
+	 * 
+	 * @param word	the word to remove
+	 * @return 	true if remove successful; false if not
+	 * @exception	IOException if the change cannot be logged
+	 */
+	public boolean remove(String word) throws IOException {
+		if(word == null) {
+			throw new IllegalArgumentException();
+		}
+		byte[] record = word.getBytes(StandardCharsets.UTF_8);
+		long sequence;
+		lock.lock();
+		try {
+			Entry entry = tree.find(word, Entry.WORD);
+			if(entry == null) {
+				return false;
+			}
+			sequence = log.append(REMOVE, record);
+			tree.remove(entry);
+		} finally {
+			lock.unlock();
+		}
+		log.commit(sequence);
+		return true;
+	}
+	
+	/**
+	 * Looks a word up
+	 * 
+	 * @param word	the word to look up
+	 * @return 	the entry for the word; null if not found
+	 */
+	public Entry find(String word) {
+		lock.lock();
+		try {
+			return tree.find(word, Entry.WORD);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Method to determine the number of words in the dictionary
+	 * 
+	 * @return 	number of entries
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return tree.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Forces every logged change to disk, whatever the sync policy
+	 * 
+	 * @exception	IOException if the log cannot be written
+	 */
+	public void sync() throws IOException {
+		log.sync();
+	}
+	
+	/**
+	 * Compacts the log by writing the current dictionary as the next
+	 * generation's snapshot and switching to an empty log. Blocks changes
+	 * while the snapshot is written.
+	 * 
+	 * @exception	IOException if the snapshot or log cannot be written
+	 */
+	public void compact() throws IOException {
+		lock.lock();
+		try {
+			log.sync();
+			DictionarySnapshot.write(tree, snapshotFile(generation + 1));
+			WriteAheadLog next = WriteAheadLog.open(logFile(generation + 1), policy, null);
+			log.close();
+			log = next;
+			generation++;
+			deleteOlderGenerations();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Syncs and closes the log
+	 * 
+	 * @exception	IOException if the log cannot be written
+	 */
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			log.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void apply(byte type, ByteBuffer payload) throws IOException {
+		if(type == INSERT) {
+			tree.insert(decodeEntry(payload));
+		} else if(type == REMOVE) {
+			Entry entry = tree.find(decodeString(payload, payload.remaining()), Entry.WORD);
+			if(entry != null) {
+				tree.remove(entry);
+			}
+		} else {
+			throw new IOException("Unknown log record type " + type);
+		}
+	}
+	
+	private static byte[] encodeEntry(Entry entry) {
+		byte[] word = entry.getEntry().getBytes(StandardCharsets.UTF_8);
+		ArrayList<String> definitions = entry.getDefinitions();
+		ArrayList<byte[]> encoded = new ArrayList<byte[]>(definitions.size());
+		int size = 8 + word.length;
+		for(int i = 0; i < definitions.size(); i++) {
+			byte[] definition = definitions.get(i).getBytes(StandardCharsets.UTF_8);
+			encoded.add(definition);
+			size += 4 + definition.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(word.length).put(word).putInt(encoded.size());
+		for(byte[] definition : encoded) {
+			buffer.putInt(definition.length).put(definition);
+		}
+		return buffer.array();
+	}
+	
+	private static Entry decodeEntry(ByteBuffer payload) {
+		String word = decodeString(payload, payload.getInt());
+		int count = payload.getInt();
+		Entry entry = new Entry(word, count > 0 ? decodeString(payload, payload.getInt()) : null);
+		if(count == 0) {
+			entry.getDefinitions().clear();
+		}
+		for(int i = 1; i < count; i++) {
+			entry.getDefinitions().add(decodeString(payload, payload.getInt()));
+		}
+		return entry;
+	}
+	
+	private static String decodeString(ByteBuffer payload, int length) {
+		String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+		return value;
+	}
+	
+	private Path snapshotFile(long generation) {
+		return directory.resolve(PREFIX + generation + ".snapshot");
+	}
+	
+	private Path logFile(long generation) {
+		return directory.resolve(PREFIX + generation + ".log");
+	}
+	
+	private static long generationOf(Path file) {
+		String name = file.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.indexOf('.', PREFIX.length())));
+		} catch(RuntimeException e) {
+			return -1;
+		}
+	}
+	
+	private void deleteOlderGenerations() throws IOException {
+		ArrayList<Path> old = new ArrayList<Path>();
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+			for(Path file : files) {
+				long fileGeneration = generationOf(file);
+				if(fileGeneration >= 0 && fileGeneration < generation) {
+					old.add(file);
+				}
+			}
+		}
+		for(Path file : old) {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -3,7 +3,33 @@ import java.util.Iterator;
 
 
 public class Entry implements Comparable<Entry>, Insertable {
-	ArrayList<String> definitions = new ArrayList<String>();
+	/**
+	 * Key extractor for looking an Entry up by its word,
+	 * e.g. tree.find("word", Entry.WORD)
+	 */
+	public static final KeyExtractor<String, Entry> WORD = new KeyExtractor<String, Entry>() {
+		public String keyOf(Entry element) {
+			return element.word;
+		}
+	};
+	
+	/**
+	 * Weigher estimating the heap bytes an Entry takes in a SplayTree, for
+	 * bounding a dictionary by memory, e.g. tree.setCapacity(1 << 30, Entry.HEAP_BYTES)
+	 */
+	public static final Weigher<Entry> HEAP_BYTES = new Weigher<Entry>() {
+		public long weigh(Entry element) {
+			// tree node, Entry, list with its array, then a header and array per string
+			long bytes = 32 + 24 + 24 + 16 + 4L * element.definitions.size();
+			bytes += 40 + element.word.length();
+			for(String definition : element.definitions) {
+				bytes += 40 + definition.length();
+			}
+			return bytes;
+		}
+	};
+	
+	ArrayList<String> definitions = new ArrayList<String>(1);
 	String word;
 	
 	public Entry(String word, String definition) {
@@ -12,7 +38,18 @@ public class Entry implements Comparable<Entry>, Insertable {
 	}
 
 	public int compareTo(Entry item) {
-		return item.getEntry().compareTo(this.word);
+		return word.compareTo(item.word);
+	}
+	
+	public boolean equals(Object o) {
+		return o instanceof Entry && word.equals(((Entry) o).word);
+	}
+	
+	/**
+	 * Entries hash by word, so an Entry and its word hash alike
+	 */
+	public int hashCode() {
+		return word.hashCode();
 	}
 
 	public ArrayList<String> getDefinitions() {
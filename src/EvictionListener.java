@@ -0,0 +1,12 @@
+/**
+ * Receives the elements a bounded SplayTree evicts to stay within its
+ * capacity, e.g. to spill them to disk. Called while the tree is being
+ * modified, so it must not access the tree.
+ * 
+ * @param <T>	type of the element
+ */
+public interface EvictionListener<T> {
+
+    public void evicted(T element);
+
+}
@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of a SplayTree, made by SplayTree.freeze, for
+ * dictionaries that are only read once loaded. The elements sit in one
+ * array in Eytzinger order: the root at 1 and the children of k at 2k and
+ * 2k + 1, as a breadth first walk of a complete tree would visit them. A
+ * search therefore touches the same few cache lines near the front of the
+ * array for the first levels and never follows a pointer, and since
+ * nothing is ever written after construction any number of threads may
+ * read at once without locking.
+ * The elements themselves are shared with the SplayTree, not copied.
+ * 
+ */
+public class FrozenDictionary<T extends Comparable<? super T>> implements Iterable<T> {
+	private static final int MAX_SIZE = 1 << 30;
+	
+	private final Object[] elements;
+	private final int size;
+	
+	/**
+	 * Constructs a FrozenDictionary of the given elements
+	 * 
+	 * @param sorted	distinct elements in ascending order
+	 * @exception	IllegalArgumentException if there are more than 2^30 elements
+	 */
+	FrozenDictionary(ArrayList<T> sorted) {
+		if(sorted.size() > MAX_SIZE) {
+			throw new IllegalArgumentException("Too many elements: " + sorted.size());
+		}
+		size = sorted.size();
+		elements = new Object[size + 1];
+		// an in order walk of the implicit tree visits the slots in sorted order
+		int k = first();
+		for(T element : sorted) {
+			elements[k] = element;
+			k = successor(k);
+		}
+	}
+	
+	/**
+	 * Find method that returns the element equal to item
+	 * 
+	 * @param item	the item to look for
+	 * @return 	the element if found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T find(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return find((Object) item, null);
+	}
+	
+	/**
+	 * Find method that looks an element up by its key, e.g.
+	 * find("word", Entry.WORD)
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return 	the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return find((Object) key, extractor);
+	}
+	
+	/**
+	 * Checks if the FrozenDictionary has an element with the provided key
+	 * 
+	 * @param key	key of the element to look for
+	 * @param extractor	extracts the key from an element
+	 * @return 	true if an element has that key; false if not
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> boolean containsKey(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		return find(key, extractor) != null;
+	}
+	
+	/**
+	 * Returns the least element greater than or equal to item
+	 * 
+	 * @param item	the item to compare against
+	 * @return 	the element; null if every element is less than item
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T ceiling(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return elementAt(lowerBound(item, null));
+	}
+	
+	/**
+	 * Returns the element with the least key greater than or equal to key
+	 * 
+	 * @param key	the key to compare against
+	 * @param extractor	extracts the key from an element
+	 * @return 	the element; null if every key is less than key
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> T ceiling(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return elementAt(lowerBound(key, extractor));
+	}
+	
+	/**
+	 * Iterator over the elements from from up to, but not including, to
+	 * 
+	 * @param from	lowest element to return
+	 * @param to	element to stop at
+	 * @return 	an iterator over the range in order
+	 * @exception	IllegalArgumentException if from or to is null
+	 */
+	public Iterator<T> range(T from, T to) {
+		if(from == null || to == null) {
+			throw new IllegalArgumentException();
+		}
+		if(from.compareTo(to) >= 0) {
+			return new inOrderArrayIterator(0, 0);
+		}
+		return new inOrderArrayIterator(lowerBound(from, null), lowerBound(to, null));
+	}
+	
+	/**
+	 * Iterator that returns the elements in order
+	 * 
+	 * @return 	an iterator to traverse the elements in order
+	 */
+	public Iterator<T> inOrderIterator() {
+		return new inOrderArrayIterator(size > 0 ? first() : 0, 0);
+	}
+	
+	public Iterator<T> iterator() {
+		return inOrderIterator();
+	}
+	
+	/**
+	 * Method to determine the size of the FrozenDictionary
+	 * 
+	 * @return 	number of elements
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Method to determine if the FrozenDictionary is empty
+	 * 
+	 * @return 	true if the FrozenDictionary is empty; false if not
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Makes a new SplayTree with the elements of the FrozenDictionary,
+	 * perfectly balanced as bulkLoad builds it
+	 * 
+	 * @return 	a mutable SplayTree
+	 */
+	public SplayTree<T> thaw() {
+		return SplayTree.fromSorted(inOrderIterator());
+	}
+	
+	private T find(Object key, KeyExtractor<?, ? super T> extractor) {
+		int k = lowerBound(key, extractor);
+		return k != 0 && compare(key, extractor, k) == 0 ? elementAt(k) : null;
+	}
+	
+	/**
+	 * Finds the slot of the least element not less than key. The descent
+	 * always runs to the bottom of the tree instead of stopping at an equal
+	 * element, so the loop body has no branch on the comparison that the
+	 * JIT cannot turn into a conditional move. Going right appends a 1 bit
+	 * to k and going left a 0, so the answer, the last node the search went
+	 * left at, is k with its trailing 1 bits and one more bit shifted off.
+	 * 
+	 * @return 	the slot; 0 if every element is less than key
+	 */
+	private int lowerBound(Object key, KeyExtractor<?, ? super T> extractor) {
+		int k = 1;
+		while(k <= size) {
+			k = 2 * k + (compare(key, extractor, k) > 0 ? 1 : 0);
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+	
+	/**
+	 * Returns the slot of the smallest element, the leftmost one
+	 */
+	private int first() {
+		return Integer.highestOneBit(Math.max(size, 1));
+	}
+	
+	/**
+	 * Returns the slot of the element after the one in slot k: the leftmost
+	 * slot of its right subtree if it has one, or else the slot of the
+	 * nearest ancestor it is left of; 0 after the largest element
+	 */
+	private int successor(int k) {
+		if(k <= (size - 1) / 2) {
+			k = 2 * k + 1;
+			while(k <= size / 2) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T elementAt(int k) {
+		return (T) elements[k];
+	}
+	
+	@SuppressWarnings("unchecked")
+	private int compare(Object key, KeyExtractor<?, ? super T> extractor, int k) {
+		if(extractor == null) {
+			return ((T) key).compareTo(elementAt(k));
+		}
+		return ((Comparable<Object>) key).compareTo(extractor.keyOf(elementAt(k)));
+	}
+	
+	/**
+	 * An in order FrozenDictionary iterator that steps from slot to slot by
+	 * index arithmetic alone
+	 * 
+	 */
+	private class inOrderArrayIterator implements Iterator<T> {
+		private int k;
+		private final int end;
+		
+		/**
+		 * Constructs an inOrderArrayIterator
+		 * 
+		 * @param start	slot of the first element to return; 0 for none
+		 * @param end	slot of the element to stop at; 0 to run to the end
+		 */
+		public inOrderArrayIterator(int start, int end) {
+			this.k = start;
+			this.end = end;
+		}
+		
+		public boolean hasNext() {
+			return k != 0 && k != end;
+		}
+		
+		/**
+		 * Method that returns the next element from the FrozenDictionary
+		 * 
+		 * @return 	element in the FrozenDictionary
+		 * @exception 	NoSuchElementException if there are no more elements to return
+		 */
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T element = elementAt(k);
+			k = successor(k);
+			return element;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * An open addressing hash index from key to element for SplayTree, so exact
+ * lookups take O(1) and leave the tree alone. Uses linear probing with the
+ * key hash cached per slot, and shifts entries back on removal instead of
+ * leaving tombstones. Equal keys must mean equal elements.
+ * 
+ * @param <T>	type of the element
+ */
+class HashIndex<T> {
+	private final KeyExtractor<?, ? super T> extractor;
+	private Object[] elements = new Object[16];
+	private int[] hashes = new int[16];
+	private int size = 0;
+	
+	/**
+	 * Constructs a HashIndex
+	 * 
+	 * @param extractor	extracts the key to index an element by
+	 */
+	public HashIndex(KeyExtractor<?, ? super T> extractor) {
+		this.extractor = extractor;
+	}
+	
+	/**
+	 * Returns the KeyExtractor the index was built with
+	 * 
+	 * @return 	the extractor
+	 */
+	public KeyExtractor<?, ? super T> extractor() {
+		return extractor;
+	}
+	
+	/**
+	 * Looks an element up by key
+	 * 
+	 * @param key	the key to look for
+	 * @return 	the element with key; null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(Object key) {
+		int hash = mix(key.hashCode());
+		int mask = elements.length - 1;
+		for(int i = hash & mask; elements[i] != null; i = (i + 1) & mask) {
+			if(hashes[i] == hash && key.equals(extractor.keyOf((T) elements[i]))) {
+				return (T) elements[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds an element, replacing any element with the same key
+	 * 
+	 * @param element	the element to add
+	 */
+	@SuppressWarnings("unchecked")
+	public void put(T element) {
+		Object key = extractor.keyOf(element);
+		int hash = mix(key.hashCode());
+		int mask = elements.length - 1;
+		int i = hash & mask;
+		for(; elements[i] != null; i = (i + 1) & mask) {
+			if(hashes[i] == hash && key.equals(extractor.keyOf((T) elements[i]))) {
+				elements[i] = element;
+				return;
+			}
+		}
+		elements[i] = element;
+		hashes[i] = hash;
+		if(++size * 4 > elements.length * 3) {
+			resize(elements.length * 2);
+		}
+	}
+	
+	/**
+	 * Removes the element with the same key as element
+	 * 
+	 * @param element	the element to remove
+	 */
+	@SuppressWarnings("unchecked")
+	public void remove(T element) {
+		Object key = extractor.keyOf(element);
+		int hash = mix(key.hashCode());
+		int mask = elements.length - 1;
+		int i = hash & mask;
+		while(true) {
+			if(elements[i] == null) {
+				return;
+			}
+			if(hashes[i] == hash && key.equals(extractor.keyOf((T) elements[i]))) {
+				break;
+			}
+			i = (i + 1) & mask;
+		}
+		// shift later entries of the probe run back over the hole
+		int hole = i;
+		for(int j = (i + 1) & mask; elements[j] != null; j = (j + 1) & mask) {
+			int home = hashes[j] & mask;
+			if(((j - home) & mask) >= ((j - hole) & mask)) {
+				elements[hole] = elements[j];
+				hashes[hole] = hashes[j];
+				hole = j;
+			}
+		}
+		elements[hole] = null;
+		size--;
+	}
+	
+	/**
+	 * Removes every element
+	 */
+	public void clear() {
+		Arrays.fill(elements, null);
+		size = 0;
+	}
+	
+	/**
+	 * Method to determine the number of elements in the index
+	 * 
+	 * @return 	the number of elements
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private void resize(int capacity) {
+		Object[] oldElements = elements;
+		int[] oldHashes = hashes;
+		elements = new Object[capacity];
+		hashes = new int[capacity];
+		int mask = capacity - 1;
+		for(int j = 0; j < oldElements.length; j++) {
+			if(oldElements[j] != null) {
+				int i = oldHashes[j] & mask;
+				while(elements[i] != null) {
+					i = (i + 1) & mask;
+				}
+				elements[i] = oldElements[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+	
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
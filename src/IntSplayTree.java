@@ -0,0 +1,319 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A SplayTree specialized for int keys, e.g. for id to Entry indexes.
+ * Keys are stored unboxed next to an optional value, which saves the
+ * boxed Integer of every node and lets comparisons skip a pointer and a
+ * compareTo call. Splaying works exactly as in SplayTree.
+ * 
+ */
+public class IntSplayTree<V> {
+	private BinaryNode<V> root;
+	private int size = 0;
+	private int modCount = 0;
+	
+	/**
+	 * Constructs an IntSplayTree
+	 * Sets the root to null
+	 */
+	public IntSplayTree() {
+		root = null;
+	}
+	
+	/**
+	 * Inserts a key and its value into the IntSplayTree
+	 * 
+	 * @param key	the key to insert
+	 * @param value	the value to keep with key; may be null
+	 * @return 	true if the key was inserted; false if it was already present,
+	 * 			in which case its value is left alone
+	 */
+	public boolean insert(int key, V value) {
+		if(root == null) {
+			root = new BinaryNode<V>(key, value);
+		} else {
+			root = splay(key, root);
+			if(key == root.key) {
+				return false;
+			}
+			BinaryNode<V> node = new BinaryNode<V>(key, value);
+			if(key > root.key) {
+				node.right = root.right;
+				root.right = null;
+				node.left = root;
+			} else {
+				node.left = root.left;
+				root.left = null;
+				node.right = root;
+			}
+			root = node;
+		}
+		size++;
+		modCount++;
+		return true;
+	}
+	
+	/**
+	 * Finds a key and splays it to the root
+	 * 
+	 * @param key	the key to look for
+	 * @return 	the value of key; null if key is not present
+	 */
+	public V find(int key) {
+		if(root == null) {
+			return null;
+		}
+		root = splay(key, root);
+		return key == root.key ? root.value : null;
+	}
+	
+	/**
+	 * Checks if a key is present, splaying it to the root
+	 * 
+	 * @param key	the key to look for
+	 * @return 	true if key is present; false if not
+	 */
+	public boolean contains(int key) {
+		if(root == null) {
+			return false;
+		}
+		root = splay(key, root);
+		return key == root.key;
+	}
+	
+	/**
+	 * Removes a key and its value from the IntSplayTree
+	 * 
+	 * @param key	the key to remove
+	 * @return 	true if the key was removed; false if it was not present
+	 */
+	public boolean remove(int key) {
+		if(root == null) {
+			return false;
+		}
+		root = splay(key, root);
+		if(key != root.key) {
+			return false;
+		}
+		if(root.left != null) {
+			// key is larger than everything on the left, so this brings up the maximum
+			BinaryNode<V> node = splay(key, root.left);
+			node.right = root.right;
+			root = node;
+		} else {
+			root = root.right;
+		}
+		size--;
+		modCount++;
+		return true;
+	}
+	
+	/**
+	 * Method to determine the size of the IntSplayTree
+	 * 
+	 * @return 	size of the IntSplayTree; 0 if IntSplayTree is empty
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Method to determine if the IntSplayTree is empty
+	 * 
+	 * @return 	true if the IntSplayTree is empty; false if not
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+	
+	/**
+	 * Iterator that returns the keys in order
+	 * 
+	 * @return 	an iterator to traverse the keys in order
+	 */
+	public PrimitiveIterator.OfInt inOrderIterator() {
+		return new inOrderTreeIterator();
+	}
+	
+	/**
+	 * Top-down splay of the subtree rooted at node on key, relinking the
+	 * nodes passed into a left and a right tree as SplayTree does
+	 * 
+	 * @param key	the key to splay on
+	 * @param node	root of the subtree to splay; must not be null
+	 * @return 	the new root of the subtree, holding key if it was present
+	 * 			or else the last node visited while searching for it
+	 */
+	private BinaryNode<V> splay(int key, BinaryNode<V> node) {
+		BinaryNode<V> leftTree = null, leftMax = null;
+		BinaryNode<V> rightTree = null, rightMin = null;
+		while(true) {
+			if(key < node.key) {
+				if(node.left == null) {
+					break;
+				}
+				if(key < node.left.key) {
+					// zig-zig: rotate right before linking
+					BinaryNode<V> child = node.left;
+					node.left = child.right;
+					child.right = node;
+					node = child;
+					if(node.left == null) {
+						break;
+					}
+				}
+				// link right
+				if(rightTree == null) {
+					rightTree = node;
+				} else {
+					rightMin.left = node;
+				}
+				rightMin = node;
+				node = node.left;
+			} else if(key > node.key) {
+				if(node.right == null) {
+					break;
+				}
+				if(key > node.right.key) {
+					// zig-zig: rotate left before linking
+					BinaryNode<V> child = node.right;
+					node.right = child.left;
+					child.left = node;
+					node = child;
+					if(node.right == null) {
+						break;
+					}
+				}
+				// link left
+				if(leftTree == null) {
+					leftTree = node;
+				} else {
+					leftMax.right = node;
+				}
+				leftMax = node;
+				node = node.right;
+			} else {
+				break;
+			}
+		}
+		// assemble
+		if(leftTree != null) {
+			leftMax.right = node.left;
+			node.left = leftTree;
+		}
+		if(rightTree != null) {
+			rightMin.left = node.right;
+			node.right = rightTree;
+		}
+		return node;
+	}
+	
+	/**
+	 * A node of an IntSplayTree. It is static so it carries no reference
+	 * to its tree.
+	 * 
+	 */
+	private static final class BinaryNode<V> {
+		private final int key;
+		private final V value;
+		private BinaryNode<V> left;
+		private BinaryNode<V> right;
+		
+		public BinaryNode(int key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+	
+	/**
+	 * An in order IntSplayTree iterator over the keys
+	 * 
+	 */
+	private class inOrderTreeIterator implements PrimitiveIterator.OfInt {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private BinaryNode<V>[] list = new BinaryNode[32];
+		private int depth = 0;
+		private BinaryNode<V> node = null;
+		private int mod;
+		
+		/**
+		 * Constructs an inOrderTreeIterator starting from the smallest key
+		 */
+		public inOrderTreeIterator() {
+			this.mod = modCount;
+			checkLeft(root);
+		}
+		
+		public boolean hasNext() {
+			return depth > 0;
+		}
+		
+		/**
+		 * Method that returns the next key from the IntSplayTree
+		 * 
+		 * @return 	key in the IntSplayTree
+		 * @exception 	ConcurrentModificationException if the IntSplayTree was modified after initializing the iterator
+		 * @exception 	NoSuchElementException if there are no more keys to return
+		 */
+		public int nextInt() {
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(depth == 0) {
+				throw new NoSuchElementException();
+			}
+			BinaryNode<V> item = list[--depth];
+			list[depth] = null;
+			checkLeft(item.right);
+			node = item;
+			return item.key;
+		}
+		
+		private void checkLeft(BinaryNode<V> node) {
+			while(node != null) {
+				push(node);
+				node = node.left;
+			}
+		}
+		
+		private void push(BinaryNode<V> node) {
+			if(depth == list.length) {
+				list = Arrays.copyOf(list, depth * 2);
+			}
+			list[depth++] = node;
+		}
+		
+		/**
+		 * Removes the last key returned from the IntSplayTree and rebuilds the
+		 * stack with one descent to the keys after it
+		 * 
+		 * @exception	IllegalStateException if next() not called before
+		 * @exception 	ConcurrentModificationException if the IntSplayTree was modified after initializing the iterator
+		 */
+		public void remove() {
+			if(node == null) {
+				throw new IllegalStateException();
+			}
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			int key = node.key;
+			node = null;
+			IntSplayTree.this.remove(key);
+			mod = modCount;
+			Arrays.fill(list, 0, depth, null);
+			depth = 0;
+			for(BinaryNode<V> next = root; next != null;) {
+				if(key < next.key) {
+					push(next);
+					next = next.left;
+				} else {
+					next = next.right;
+				}
+			}
+		}
+	}
+}
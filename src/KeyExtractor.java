@@ -0,0 +1,13 @@
+/**
+ * Extracts the key a SplayTree element is ordered by, so the tree can be
+ * searched by key without building a throwaway element to compare against.
+ * Keys must sort in the same order as the elements they come from.
+ * 
+ * @param <K>	type of the key
+ * @param <T>	type of the element
+ */
+public interface KeyExtractor<K, T> {
+
+    public K keyOf(T element);
+
+}
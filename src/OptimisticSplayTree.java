@@ -0,0 +1,165 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread safe front end to a SplayTree for read-mostly workloads. Finds
+ * do a plain, non-splaying search under a StampedLock optimistic read, so
+ * readers never block each other or write to shared memory. A sampled
+ * fraction of finds, and every find that has to search deeper than a
+ * threshold, is promoted to a real splay under the write lock so hot
+ * elements still move toward the root over time.
+ */
+public class OptimisticSplayTree<T extends Comparable<? super T>> {
+	private final SplayTree<T> tree;
+	private final StampedLock lock = new StampedLock();
+	private final int sampleRate;
+	private final int depthThreshold;
+	
+	/**
+	 * Constructs an OptimisticSplayTree around a new, empty SplayTree that
+	 * splays one find in 64 and every find deeper than 32 levels
+	 */
+	public OptimisticSplayTree() {
+		this(new SplayTree<T>(), 64, 32);
+	}
+	
+	/**
+	 * Constructs an OptimisticSplayTree around an existing SplayTree. The
+	 * tree must not be used directly afterwards.
+	 * 
+	 * @param tree	the SplayTree to read and modify
+	 * @param sampleRate	one in sampleRate finds is splayed; 0 to splay none by sampling
+	 * @param depthThreshold	finds that search deeper than this are splayed
+	 * @exception	IllegalArgumentException if tree is null or sampleRate or depthThreshold is negative
+	 */
+	public OptimisticSplayTree(SplayTree<T> tree, int sampleRate, int depthThreshold) {
+		if(tree == null || sampleRate < 0 || depthThreshold < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.tree = tree;
+		this.sampleRate = sampleRate;
+		this.depthThreshold = depthThreshold;
+	}
+	
+	/**
+	 * Find method that returns a pointer to the item provided
+	 * 
+	 * @param item	item to be found
+	 * @return 	pointer to item if found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	@SuppressWarnings("unchecked")
+	public T find(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		Object result = read(item, null);
+		if(result == SplayTree.TOO_DEEP || sampled()) {
+			long stamp = lock.writeLock();
+			try {
+				return tree.find(item);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		return (T) result;
+	}
+	
+	/**
+	 * Find method that looks an element up by its key
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return 	pointer to the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	@SuppressWarnings("unchecked")
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		Object result = read(key, extractor);
+		if(result == SplayTree.TOO_DEEP || sampled()) {
+			long stamp = lock.writeLock();
+			try {
+				return tree.find(key, extractor);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		return (T) result;
+	}
+	
+	/**
+	 * Inserts the item under the write lock, see SplayTree.insert
+	 * 
+	 * @param item	the item to be inserted
+	 * @return 	true if the tree was modified, false if not
+	 */
+	public boolean insert(T item) {
+		long stamp = lock.writeLock();
+		try {
+			return tree.insert(item);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Removes the item under the write lock, see SplayTree.remove
+	 * 
+	 * @param item	the item to be removed
+	 * @return 	true if remove successful; false if not
+	 */
+	public boolean remove(T item) {
+		long stamp = lock.writeLock();
+		try {
+			return tree.remove(item);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Method to determine the size of the tree
+	 * 
+	 * @return 	size of the tree
+	 */
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int size = tree.size();
+		if(!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				size = tree.size();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Searches without splaying, first optimistically and then, if a writer
+	 * got in the way, under the read lock
+	 */
+	private Object read(Object key, KeyExtractor<?, ? super T> extractor) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0) {
+			Object result = tree.peek(key, extractor, depthThreshold);
+			if(lock.validate(stamp)) {
+				return result;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return tree.peek(key, extractor, depthThreshold);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	private boolean sampled() {
+		return sampleRate > 0 && ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+	}
+}
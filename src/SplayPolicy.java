@@ -0,0 +1,95 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how a SplayTree restructures itself when find accesses an
+ * element. Splaying every access gives the amortized guarantees but
+ * rewrites the whole access path each time; the other policies trade some
+ * of that self-adjustment for fewer writes.
+ */
+public interface SplayPolicy {
+
+    /**
+     * What to do with the access path of a find
+     */
+    public enum Action {
+        /** leave the tree as it is */
+        NONE,
+        /** splay the accessed node to the root */
+        SPLAY,
+        /** semi-splay: halve the depth of the access path without bringing the node to the root */
+        SEMI_SPLAY
+    }
+
+    /**
+     * Splay on every find, hit or miss
+     */
+    public static final SplayPolicy ALWAYS = new SplayPolicy() {
+        public Action onAccess(int depth, boolean found) {
+            return Action.SPLAY;
+        }
+    };
+
+    /**
+     * Semi-splay on every find, hit or miss
+     */
+    public static final SplayPolicy SEMI_SPLAY = new SplayPolicy() {
+        public Action onAccess(int depth, boolean found) {
+            return Action.SEMI_SPLAY;
+        }
+    };
+
+    /**
+     * Splay on finds that hit and leave the tree alone on misses
+     */
+    public static final SplayPolicy HITS_ONLY = new SplayPolicy() {
+        public Action onAccess(int depth, boolean found) {
+            return found ? Action.SPLAY : Action.NONE;
+        }
+    };
+
+    /**
+     * Decides what to do with an access
+     * 
+     * @param depth	depth of the accessed node, or of the last node visited on a miss; the root is 0
+     * @param found	true if find found the item
+     * @return 	the action to take
+     */
+    public Action onAccess(int depth, boolean found);
+
+    /**
+     * Splay each find with the given probability
+     * 
+     * @param probability	chance of splaying, from 0 to 1
+     * @return 	the policy
+     * @exception	IllegalArgumentException if probability is not between 0 and 1
+     */
+    public static SplayPolicy probability(final double probability) {
+        if(!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException();
+        }
+        return new SplayPolicy() {
+            public Action onAccess(int depth, boolean found) {
+                return ThreadLocalRandom.current().nextDouble() < probability ? Action.SPLAY : Action.NONE;
+            }
+        };
+    }
+
+    /**
+     * Splay only finds that reach deeper than the given depth
+     * 
+     * @param depth	deepest access that is left alone
+     * @return 	the policy
+     * @exception	IllegalArgumentException if depth is negative
+     */
+    public static SplayPolicy deeperThan(final int depth) {
+        if(depth < 0) {
+            throw new IllegalArgumentException();
+        }
+        return new SplayPolicy() {
+            public Action onAccess(int accessDepth, boolean found) {
+                return accessDepth > depth ? Action.SPLAY : Action.NONE;
+            }
+        };
+    }
+
+}
@@ -1,8 +1,23 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Stack;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A SplayTree implementation class
@@ -11,8 +26,27 @@ import java.util.Stack;
  */
 
 public class SplayTree<T extends Comparable<? super T>> implements Iterable<SplayTree<T>.BinaryNode> {
-	private BinaryNode root, leftTree, rightTree;
+	static final Object TOO_DEEP = new Object();
+	
+	private BinaryNode root;
 	private int modCount = 0;
+	private SplayPolicy policy = SplayPolicy.ALWAYS;
+	private BinaryNode[] path;
+	private int shapeCount = 0;
+	private long capacity = Long.MAX_VALUE;
+	private Weigher<? super T> weigher;
+	private long weight = 0;
+	private EvictionListener<? super T> evictionListener;
+	private HashIndex<T> index;
+	
+	private static final int EXPORT_CHUNK = 1 << 16;
+	
+	/**
+	 * Order to visit the elements in when exporting a SplayTree
+	 */
+	public enum Traversal {
+		IN_ORDER, PRE_ORDER, LEVEL_ORDER
+	}
 	
 	/**
 	 * Constructs a SplayTree
@@ -21,7 +55,59 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	public SplayTree() {
 		root = null;
 	}
+	
+	/**
+	 * Builds a perfectly balanced SplayTree from items in ascending order in
+	 * linear time, without splaying. Adjacent equal items are merged the way
+	 * insert merges them: Insertable items are inserted into the first one,
+	 * other duplicates are dropped.
+	 * 
+	 * @param items	the items in ascending order
+	 * @return 	a SplayTree holding the items
+	 * @exception	IllegalArgumentException if an item is null or out of order
+	 */
+	public static <T extends Comparable<? super T>> SplayTree<T> fromSorted(Iterator<? extends T> items) {
+		SplayTree<T> tree = new SplayTree<T>();
+		tree.bulkLoad(items);
+		return tree;
+	}
+	
+	/**
+	 * Copies the SplayTree into a FrozenDictionary, an immutable sorted
+	 * array in Eytzinger order that any number of threads can search at
+	 * once. Later changes to the SplayTree do not reach the copy, but the
+	 * elements are shared, so merging into an element shows in both.
+	 * FrozenDictionary.thaw goes back to a SplayTree.
+	 * 
+	 * @return 	a FrozenDictionary of the elements
+	 */
+	public FrozenDictionary<T> freeze() {
+		return new FrozenDictionary<T>(toList());
+	}
 
+	/**
+	 * Method that returns the policy find uses to restructure the SplayTree
+	 * 
+	 * @return 	the SplayPolicy in use
+	 */
+	public SplayPolicy getSplayPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * Sets the policy find uses to restructure the SplayTree. Insert and
+	 * remove always splay.
+	 * 
+	 * @param policy	the SplayPolicy to use; SplayPolicy.ALWAYS by default
+	 * @exception	IllegalArgumentException if policy is null
+	 */
+	public void setSplayPolicy(SplayPolicy policy) {
+		if(policy == null) {
+			throw new IllegalArgumentException();
+		}
+		this.policy = policy;
+	}
+	
 	/**
 	 * Checks if the SplayTree has no nodes
 	 * 
@@ -46,7 +132,198 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @return 	an iterator to traverse the nodes in preorder
 	 */
 	public Iterator<T> inOrderIterator() {
-		return new inOrderTreeIterator(root);
+		return new inOrderTreeIterator(root, true);
+	}
+	
+	/**
+	 * Iterator that returns the elements in reverse order
+	 * 
+	 * @return 	an iterator to traverse the elements from largest to smallest
+	 */
+	public Iterator<T> descendingIterator() {
+		return new inOrderTreeIterator(root, false);
+	}
+	
+	/**
+	 * Returns a Cursor positioned before the first element of the SplayTree
+	 * 
+	 * @return 	a Cursor for browsing the SplayTree in either direction
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	
+	/**
+	 * Spliterator over the elements in order. It splits by rank using the
+	 * subtree sizes, so both halves know their exact size and every split
+	 * is even. Traversal does not splay, but other threads must not access
+	 * the SplayTree while it is being traversed in parallel, since even a
+	 * find restructures it.
+	 * 
+	 * @return 	a SORTED, ORDERED, DISTINCT, SIZED and SUBSIZED Spliterator
+	 */
+	public Spliterator<T> inOrderSpliterator() {
+		return new rankSpliterator(0, size());
+	}
+	
+	/**
+	 * Returns a sequential Stream of the elements in order
+	 * 
+	 * @return 	a Stream over the SplayTree
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(inOrderSpliterator(), false);
+	}
+	
+	/**
+	 * Returns a parallel Stream of the elements, e.g. for counting the
+	 * definitions of every Entry of a dictionary
+	 * 
+	 * @return 	a parallel Stream over the SplayTree
+	 */
+	public Stream<T> parallelStream() {
+		return StreamSupport.stream(inOrderSpliterator(), true);
+	}
+	
+	/**
+	 * Iterator that returns the elements from from up to, but not including,
+	 * to in order. Splays on from to find the start, then walks lazily.
+	 * 
+	 * @param from	lowest element to return
+	 * @param to	element to stop at
+	 * @return 	an iterator over the range
+	 * @exception	IllegalArgumentException if from or to is null
+	 */
+	public Iterator<T> range(T from, final T to) {
+		if(from == null || to == null) {
+			throw new IllegalArgumentException();
+		}
+		return new rangeTreeIterator(from, null) {
+			protected boolean inRange(T element) {
+				return element.compareTo(to) < 0;
+			}
+		};
+	}
+	
+	/**
+	 * Iterator that returns the elements whose key starts with prefix in
+	 * order, e.g. prefixScan("tr", Entry.WORD). Splays on the prefix to find
+	 * the first match, then walks lazily, so it costs O(log n) plus the
+	 * number of matches read.
+	 * 
+	 * @param prefix	the prefix to look for
+	 * @param extractor	extracts the key from an element
+	 * @return 	an iterator over the matching elements
+	 * @exception	IllegalArgumentException if prefix or extractor is null
+	 */
+	public Iterator<T> prefixScan(final String prefix, final KeyExtractor<String, ? super T> extractor) {
+		if(prefix == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return new rangeTreeIterator(prefix, extractor) {
+			protected boolean inRange(T element) {
+				return extractor.keyOf(element).startsWith(prefix);
+			}
+		};
+	}
+	
+	/**
+	 * Returns the least element greater than or equal to item
+	 * 
+	 * @param item	the item to compare against
+	 * @return 	the ceiling of item; null if there is none
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T ceiling(T item) {
+		return elementOf(successor(item, null, true));
+	}
+	
+	/**
+	 * Returns the least element strictly greater than item
+	 * 
+	 * @param item	the item to compare against
+	 * @return 	the element above item; null if there is none
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T higher(T item) {
+		return elementOf(successor(item, null, false));
+	}
+	
+	/**
+	 * Returns the greatest element less than or equal to item
+	 * 
+	 * @param item	the item to compare against
+	 * @return 	the floor of item; null if there is none
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T floor(T item) {
+		return elementOf(predecessor(item, null, true));
+	}
+	
+	/**
+	 * Returns the greatest element strictly less than item
+	 * 
+	 * @param item	the item to compare against
+	 * @return 	the element below item; null if there is none
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public T lower(T item) {
+		return elementOf(predecessor(item, null, false));
+	}
+	
+	/**
+	 * Splays on key and returns the root if it qualifies, or else the
+	 * smallest node of the root's right subtree, which is then splayed to
+	 * the top of that subtree. Everything there is greater than key.
+	 * 
+	 * @param key	the key or item to compare against
+	 * @param extractor	extracts the key from an element; null to compare elements
+	 * @param inclusive	true if a node equal to key qualifies
+	 * @return 	either the root or its right child; null if there is none
+	 */
+	private BinaryNode successor(Object key, KeyExtractor<?, ? super T> extractor, boolean inclusive) {
+		if(key == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == null) {
+			return null;
+		}
+		root = splay(key, extractor, root);
+		int compare = compare(key, extractor, root.element);
+		if(compare < 0 || (compare == 0 && inclusive)) {
+			return root;
+		}
+		if(root.right == null) {
+			return null;
+		}
+		root.right = splay(key, extractor, root.right);
+		return root.right;
+	}
+	
+	/**
+	 * Mirror image of successor
+	 */
+	private BinaryNode predecessor(Object key, KeyExtractor<?, ? super T> extractor, boolean inclusive) {
+		if(key == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == null) {
+			return null;
+		}
+		root = splay(key, extractor, root);
+		int compare = compare(key, extractor, root.element);
+		if(compare > 0 || (compare == 0 && inclusive)) {
+			return root;
+		}
+		if(root.left == null) {
+			return null;
+		}
+		root.left = splay(key, extractor, root.left);
+		return root.left;
+	}
+	
+	private T elementOf(BinaryNode node) {
+		return node == null ? null : node.element;
 	}
 	
 	/**
@@ -59,7 +336,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 			return new ArrayList<Object>();
 		}
 		Iterator<BinaryNode> i = iterator();
-		ArrayList<Object> treeArrayList = new ArrayList<Object>();
+		ArrayList<Object> treeArrayList = new ArrayList<Object>(size());
 		while(i.hasNext()) {
 			treeArrayList.add(i.next().element);
 		}
@@ -91,18 +368,124 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @return 	string in [element, element] format with the SplayTree BinaryNodes in order 
 	 */
 	public String toString() {
-		String temp = "";
-		if(root == null) {
-			return temp;
+		StringBuilder temp = new StringBuilder();
+		try {
+			writeTo(temp, Traversal.PRE_ORDER);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		Iterator<BinaryNode> i = iterator();
+		return temp.toString();
+	}
+	
+	/**
+	 * Writes the elements in order to out in the toString format
+	 * 
+	 * @param out	where to write the elements
+	 * @exception	IOException if out cannot be written
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		writeTo(out, Traversal.IN_ORDER);
+	}
+	
+	/**
+	 * Writes the elements to out in the toString format one at a time, in
+	 * linear time and without copying the SplayTree. Memory is bounded by the
+	 * height of the SplayTree, or by its widest level for LEVEL_ORDER.
+	 * 
+	 * @param out	where to write the elements
+	 * @param order	order to write the elements in
+	 * @exception	IOException if out cannot be written
+	 * @exception	IllegalArgumentException if order is null
+	 */
+	public void writeTo(Appendable out, Traversal order) throws IOException {
+		Iterator<T> i = elements(order);
 		while(i.hasNext()) {
-			temp += "[" + i.next() + "]";
+			out.append('[').append(String.valueOf(i.next())).append(']');
 			if(i.hasNext()) {
-				temp += ", ";
+				out.append(", ");
 			}
 		}
-		return temp;
+	}
+	
+	/**
+	 * Writes the elements in order to channel as UTF-8 in the toString
+	 * format, encoding through a fixed size buffer. The channel is left open.
+	 * 
+	 * @param channel	where to write the elements
+	 * @exception	IOException if channel cannot be written
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		writeTo(channel, Traversal.IN_ORDER);
+	}
+	
+	/**
+	 * Writes the elements to channel as UTF-8 in the toString format,
+	 * encoding through a fixed size buffer. The channel is left open.
+	 * 
+	 * @param channel	where to write the elements
+	 * @param order	order to write the elements in
+	 * @exception	IOException if channel cannot be written
+	 * @exception	IllegalArgumentException if order is null
+	 */
+	public void writeTo(WritableByteChannel channel, Traversal order) throws IOException {
+		Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), EXPORT_CHUNK), EXPORT_CHUNK);
+		writeTo(out, order);
+		out.flush();
+	}
+	
+	/**
+	 * Returns the elements in order in a list sized to hold them exactly
+	 * 
+	 * @return 	ArrayList with the elements in order
+	 */
+	public ArrayList<T> toList() {
+		return toList(Traversal.IN_ORDER);
+	}
+	
+	/**
+	 * Returns the elements in a list sized to hold them exactly
+	 * 
+	 * @param order	order to list the elements in
+	 * @return 	ArrayList with the elements in the given order
+	 * @exception	IllegalArgumentException if order is null
+	 */
+	public ArrayList<T> toList(Traversal order) {
+		Iterator<T> i = elements(order);
+		ArrayList<T> list = new ArrayList<T>(size());
+		while(i.hasNext()) {
+			list.add(i.next());
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns an iterator over the elements in the given order
+	 */
+	private Iterator<T> elements(Traversal order) {
+		if(order == null) {
+			throw new IllegalArgumentException();
+		}
+		switch(order) {
+		case PRE_ORDER:
+			final Iterator<BinaryNode> nodes = iterator();
+			return new Iterator<T>() {
+				public boolean hasNext() {
+					return nodes.hasNext();
+				}
+				
+				public T next() {
+					return nodes.next().element;
+				}
+				
+				public void remove() {
+					nodes.remove();
+				}
+			};
+		case LEVEL_ORDER:
+			return new levelOrderTreeIterator(root);
+		default:
+			return inOrderIterator();
+		}
 	}
 	
 	/**
@@ -111,7 +494,90 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @return 	size of the SplayTree; 0 if SplayTree is empty
 	 */
 	public int size() {
-		return !isEmpty() ? root.size() : 0;
+		return sizeOf(root);
+	}
+	
+	/**
+	 * Method to determine how many elements of the SplayTree sort before item.
+	 * The item does not need to be in the SplayTree.
+	 * 
+	 * @param item	the item to rank
+	 * @return 	number of elements less than item
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public int rank(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == null) {
+			return 0;
+		}
+		root = splay(item, root);
+		int rank = sizeOf(root.left);
+		if(item.compareTo(root.element) > 0) {
+			rank++;
+		}
+		return rank;
+	}
+	
+	/**
+	 * Method that returns the element at position k of the SplayTree in order.
+	 * The selected element is splayed to the root.
+	 * 
+	 * @param k	zero based position of the element
+	 * @return 	the k-th smallest element
+	 * @exception	IndexOutOfBoundsException if k is not between 0 and size() - 1
+	 */
+	public T select(int k) {
+		if(k < 0 || k >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + size());
+		}
+		BinaryNode node = root;
+		while(true) {
+			int leftSize = sizeOf(node.left);
+			if(k < leftSize) {
+				node = node.left;
+			} else if(k > leftSize) {
+				k -= leftSize + 1;
+				node = node.right;
+			} else {
+				break;
+			}
+		}
+		root = splay(node.element, root);
+		return root.element;
+	}
+	
+	/**
+	 * Method that returns the elements between two positions of the SplayTree
+	 * in order. Only the requested range is copied.
+	 * 
+	 * @param from	position of the first element, inclusive
+	 * @param to	position of the last element, exclusive
+	 * @return 	ArrayList with the elements from position from up to to
+	 * @exception	IndexOutOfBoundsException if from < 0, to > size() or from > to
+	 */
+	public ArrayList<T> subList(int from, int to) {
+		if(from < 0 || to > size() || from > to) {
+			throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + size());
+		}
+		ArrayList<T> list = new ArrayList<T>(to - from);
+		if(from == to) {
+			return list;
+		}
+		list.add(select(from));
+		ArrayDeque<BinaryNode> stack = new ArrayDeque<BinaryNode>();
+		BinaryNode node = root.right;
+		while(list.size() < to - from) {
+			while(node != null) {
+				stack.push(node);
+				node = node.left;
+			}
+			node = stack.pop();
+			list.add(node.element);
+			node = node.right;
+		}
+		return list;
 	}
 	
 	/**
@@ -124,18 +590,22 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @exception	IllegalArgumentException if item is null
 	 */
 	public boolean insert(T item) {
-		leftTree = null;
-		rightTree = null;
 		if(item == null) {
 			throw new IllegalArgumentException();
 		}
 		if(root != null) {
-			root = assembleTree(root.splay(item));
+			root = splay(item, root);
 			
 			int rootCompare = item.compareTo(root.element);
 			if(rootCompare == 0) {
 			    if(item instanceof Insertable){
-			    	return ((Insertable)root.element).insert(item);
+			    	long before = weigher != null ? weigher.weigh(root.element) : 0;
+			    	boolean merged = ((Insertable)root.element).insert(item);
+			    	if(weigher != null) {
+			    		weight += weigher.weigh(root.element) - before;
+			    		evict();
+			    	}
+			    	return merged;
 			    } else {
 			    	return false;
 				}
@@ -155,17 +625,182 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 				}
 				node.right = root;
 			}
+			root.subtreeSize = 1 + sizeOf(root.left) + sizeOf(root.right);
+			node.subtreeSize = 1 + sizeOf(node.left) + sizeOf(node.right);
 			root = node;
 			modCount++;
 		} else {
 			root = new BinaryNode(item);
 			modCount++;
 		}
-		
+		track(item, true);
+		evict();
 
 		return true;
 	}
 	
+	/**
+	 * Inserts items in ascending order by merging them with the elements
+	 * already in the SplayTree and rebuilding it perfectly balanced. Costs
+	 * O(n + k) for k items instead of O(k log n) for inserting them one at
+	 * a time. Equal items merge as in insert.
+	 * 
+	 * @param items	the items in ascending order
+	 * @return 	true if the tree was modified, false if not
+	 * @exception	IllegalArgumentException if an item is null or out of order
+	 */
+	public boolean bulkLoad(Iterator<? extends T> items) {
+		// check all the items before merging any, so bad input changes nothing
+		ArrayList<T> batch = new ArrayList<T>();
+		T previous = null;
+		while(items.hasNext()) {
+			T item = items.next();
+			if(item == null) {
+				throw new IllegalArgumentException();
+			}
+			if(previous != null && item.compareTo(previous) < 0) {
+				throw new IllegalArgumentException("Items are not in ascending order: " + item + " after " + previous);
+			}
+			batch.add(item);
+			previous = item;
+		}
+		ArrayList<T> merged = new ArrayList<T>(size() + batch.size());
+		Iterator<T> existing = inOrderIterator();
+		T current = existing.hasNext() ? existing.next() : null;
+		boolean modified = false;
+		for(T item : batch) {
+			while(current != null && current.compareTo(item) <= 0) {
+				merged.add(current);
+				current = existing.hasNext() ? existing.next() : null;
+			}
+			T last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if(last != null && last.compareTo(item) == 0) {
+				if(last instanceof Insertable && ((Insertable) last).insert(item)) {
+					modified = true;
+				}
+			} else {
+				merged.add(item);
+				modified = true;
+			}
+		}
+		while(current != null) {
+			merged.add(current);
+			current = existing.hasNext() ? existing.next() : null;
+		}
+		if(modified) {
+			root = build(merged, 0, merged.size());
+			modCount++;
+			retrack();
+			evict();
+		}
+		return modified;
+	}
+	
+	/**
+	 * Inserts a batch of items. The batch is sorted and equal items in it
+	 * are merged first, Insertable ones into the first of them, others
+	 * dropped. The items are then inserted in ascending order, so each
+	 * splay starts next to the previous one and stays short. A batch at
+	 * least as large as the SplayTree is merged in with bulkLoad instead.
+	 * 
+	 * @param items	the items to insert, in any order
+	 * @return 	true if the tree was modified, false if not
+	 * @exception	IllegalArgumentException if an item is null
+	 */
+	public boolean insertAll(Collection<? extends T> items) {
+		ArrayList<T> batch = sortBatch(items, true);
+		if(batch.size() >= size()) {
+			return bulkLoad(batch.iterator());
+		}
+		boolean modified = false;
+		for(T item : batch) {
+			if(insert(item)) {
+				modified = true;
+			}
+		}
+		return modified;
+	}
+	
+	/**
+	 * Finds a batch of items. The batch is sorted and looked up in ascending
+	 * order, so each splay starts next to the previous one and stays short.
+	 * A batch at least as large as the SplayTree is matched against an in
+	 * order walk instead, without splaying.
+	 * 
+	 * @param items	the items to look for, in any order
+	 * @return 	the elements found, in ascending order and without repeats
+	 * @exception	IllegalArgumentException if an item is null
+	 */
+	public ArrayList<T> findAll(Collection<? extends T> items) {
+		ArrayList<T> batch = sortBatch(items, false);
+		ArrayList<T> found = new ArrayList<T>();
+		if(batch.size() >= size()) {
+			Iterator<T> existing = inOrderIterator();
+			T current = existing.hasNext() ? existing.next() : null;
+			for(T item : batch) {
+				while(current != null && current.compareTo(item) < 0) {
+					current = existing.hasNext() ? existing.next() : null;
+				}
+				if(current != null && current.compareTo(item) == 0) {
+					found.add(current);
+				}
+			}
+		} else {
+			for(T item : batch) {
+				T element = find(item);
+				if(element != null) {
+					found.add(element);
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Copies and sorts a batch, keeping the first of each run of equal
+	 * items. If merge is set the rest of a run are inserted into the first
+	 * when it is Insertable.
+	 */
+	private ArrayList<T> sortBatch(Collection<? extends T> items, boolean merge) {
+		ArrayList<T> sorted = new ArrayList<T>(items);
+		for(T item : sorted) {
+			if(item == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		Collections.sort(sorted);
+		int kept = 0;
+		for(int i = 0; i < sorted.size(); i++) {
+			T item = sorted.get(i);
+			if(kept > 0 && sorted.get(kept - 1).compareTo(item) == 0) {
+				T first = sorted.get(kept - 1);
+				if(merge && first instanceof Insertable) {
+					((Insertable) first).insert(item);
+				}
+			} else {
+				sorted.set(kept++, item);
+			}
+		}
+		sorted.subList(kept, sorted.size()).clear();
+		return sorted;
+	}
+	
+	/**
+	 * Builds a perfectly balanced subtree from a sorted range of a list.
+	 * Recurses only log(n) deep.
+	 */
+	private BinaryNode build(ArrayList<T> list, int from, int to) {
+		if(from >= to) {
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		BinaryNode node = new BinaryNode(list.get(middle));
+		node.left = build(list, from, middle);
+		node.right = build(list, middle + 1, to);
+		node.subtreeSize = to - from;
+		return node;
+	}
+	
 	/**
 	 * Removes the provided item from the SplayTree
 	 * 
@@ -174,35 +809,338 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @exception	IllegalArgumentException if item is null
 	 */
 	public boolean remove(T item) {
-		leftTree = null;
-		rightTree = null;
 		if(item == null) {
 			throw new IllegalArgumentException();
 		}
 		if(root != null) {
-			root = assembleTree(root.splay(item));
+			root = splay(item, root);
 			
 			if(item.compareTo(root.element) != 0) {
 				return false;
 			}
-			BinaryNode node;
+			track(root.element, false);
 			if(root.left != null) {
-				leftTree = null;
-				rightTree = null;
-				node = assembleTree(root.left.splay(findMax(root.left).element));
+				/*
+				 * item is larger than everything in the left subtree, so
+				 * splaying on it brings the maximum up without a separate walk
+				 */
+				BinaryNode node = splay(item, root.left);
 				node.right = root.right;
+				node.subtreeSize += sizeOf(root.right);
 				root = node;
-				//node.right = rightTree;
-				//node.left = leftTree;
 			} else {
 				root = root.right;
 			}
+			modCount++;
 		} else {
 			return false;
 		}
 		return true;
 	}
 	
+	/**
+	 * Splits the SplayTree around item in amortized O(log n). This tree
+	 * keeps the elements less than item; the rest move to the returned tree.
+	 * 
+	 * @param item	the item to split at; it does not need to be in the SplayTree
+	 * @return 	a new SplayTree with the elements greater than or equal to item
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	public SplayTree<T> split(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		SplayTree<T> upper = new SplayTree<T>();
+		if(root == null) {
+			return upper;
+		}
+		BinaryNode node = splay(item, root);
+		if(item.compareTo(node.element) > 0) {
+			upper.root = node.right;
+			node.right = null;
+			root = node;
+		} else {
+			upper.root = node;
+			root = node.left;
+			node.left = null;
+		}
+		node.subtreeSize = 1 + sizeOf(node.left) + sizeOf(node.right);
+		if(upper.root != null) {
+			modCount++;
+			if(weigher != null || index != null) {
+				// walk whichever side is smaller
+				if(sizeOf(upper.root) < sizeOf(root)) {
+					trackAll(upper.root, false);
+				} else {
+					retrack();
+				}
+			}
+		}
+		return upper;
+	}
+	
+	/**
+	 * Moves every element of another SplayTree into this one in amortized
+	 * O(log n). All elements of one tree must be less than all elements of
+	 * the other. The other tree is left empty.
+	 * 
+	 * @param other	the SplayTree to join with this one
+	 * @exception	IllegalArgumentException if other is null, this tree, or
+	 * 				has elements between the smallest and largest of this tree
+	 */
+	public void join(SplayTree<T> other) {
+		if(other == null || other == this) {
+			throw new IllegalArgumentException();
+		}
+		if(other.root == null) {
+			return;
+		}
+		if(root != null) {
+			boolean otherUpper = root.element.compareTo(other.root.element) < 0;
+			BinaryNode lower = otherUpper ? root : other.root;
+			BinaryNode upper = otherUpper ? other.root : root;
+			// bring the largest lower and the smallest upper element up
+			lower = splay(upper.element, lower);
+			upper = splay(lower.element, upper);
+			if(otherUpper) {
+				root = lower;
+				other.root = upper;
+			} else {
+				root = upper;
+				other.root = lower;
+			}
+			if(lower.right != null || upper.left != null || lower.element.compareTo(upper.element) >= 0) {
+				throw new IllegalArgumentException("Trees overlap");
+			}
+			trackAll(other.root, true);
+			root = concat(lower, upper);
+		} else {
+			trackAll(other.root, true);
+			root = other.root;
+		}
+		other.root = null;
+		other.retrack();
+		other.modCount++;
+		modCount++;
+		evict();
+	}
+	
+	/**
+	 * Removes every element from from up to, but not including, to in
+	 * amortized O(log n) by splitting out the range and joining the rest
+	 * 
+	 * @param from	lowest element to remove
+	 * @param to	element to stop at
+	 * @return 	number of elements removed
+	 * @exception	IllegalArgumentException if from or to is null
+	 */
+	public int removeRange(T from, T to) {
+		if(from == null || to == null) {
+			throw new IllegalArgumentException();
+		}
+		if(root == null || from.compareTo(to) >= 0) {
+			return 0;
+		}
+		SplayTree<T> middle = split(from);
+		SplayTree<T> upper = middle.split(to);
+		int removed = middle.size();
+		join(upper);
+		if(removed > 0) {
+			modCount++;
+		}
+		return removed;
+	}
+	
+	/**
+	 * Bounds the SplayTree to at most capacity elements. Whenever an insert,
+	 * bulkLoad or join takes it over, cold elements are evicted until it
+	 * fits again.
+	 * 
+	 * @param capacity	the most elements to hold; Long.MAX_VALUE for no bound
+	 * @exception	IllegalArgumentException if capacity is less than 1
+	 */
+	public void setCapacity(long capacity) {
+		setCapacity(capacity, null);
+	}
+	
+	/**
+	 * Bounds the total weight of the elements, e.g. their estimated bytes
+	 * with Entry.HEAP_BYTES. Whenever an insert, bulkLoad or join takes the
+	 * SplayTree over capacity, cold elements are evicted until it fits
+	 * again. An evicted element is a leaf found by descending from the root
+	 * into the larger subtree each time: it is deep, so it has not been
+	 * splayed recently. It is splayed up before it is removed, so evictions
+	 * cost O(log n) amortized even when keys arrive sorted. The root, which
+	 * is the element just inserted, is never evicted. Elements split off
+	 * into another SplayTree are not bounded there.
+	 * 
+	 * @param capacity	the most weight to hold; Long.MAX_VALUE for no bound
+	 * @param weigher	weighs the elements; null to count them
+	 * @exception	IllegalArgumentException if capacity is less than 1
+	 */
+	public void setCapacity(long capacity, Weigher<? super T> weigher) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.weigher = weigher;
+		retrack();
+		evict();
+	}
+	
+	/**
+	 * Returns the bound set by setCapacity
+	 * 
+	 * @return 	the capacity; Long.MAX_VALUE if the SplayTree is not bounded
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the total weight of the elements as the capacity counts it
+	 * 
+	 * @return 	the total weight; the size if there is no Weigher
+	 */
+	public long weight() {
+		return weigher != null ? weight : size();
+	}
+	
+	/**
+	 * Sets the listener to pass evicted elements to, e.g. to spill them
+	 * to disk
+	 * 
+	 * @param listener	the listener; null for none
+	 */
+	public void setEvictionListener(EvictionListener<? super T> listener) {
+		this.evictionListener = listener;
+	}
+	
+	/**
+	 * Keeps a hash index of the elements by the key extractor gives them,
+	 * e.g. Entry.WORD. find of an element, and find and containsKey with
+	 * the same extractor, are then answered from the index in O(1) without
+	 * splaying, so hot words no longer pay for the splay or reshape the
+	 * SplayTree. Every insert, remove, split, join, bulkLoad and eviction
+	 * keeps the index up to date, at the cost of a hash update each and
+	 * about 12 bytes per element. Keys must be equal exactly when their
+	 * elements compare equal. peek still searches the tree.
+	 * 
+	 * @param extractor	extracts the key to index by; null to drop the index
+	 */
+	public void setHashIndex(KeyExtractor<?, ? super T> extractor) {
+		index = extractor != null ? new HashIndex<T>(extractor) : null;
+		retrack();
+	}
+	
+	/**
+	 * Checks if the SplayTree keeps a hash index, see setHashIndex
+	 * 
+	 * @return 	true if exact lookups go through a hash index; false if not
+	 */
+	public boolean hasHashIndex() {
+		return index != null;
+	}
+	
+	/**
+	 * Evicts cold leaves until the SplayTree is within its capacity. Each
+	 * walk down takes the larger subtree. The leaf found is then splayed to
+	 * the top of the root's subtree before it is unlinked, which pays for
+	 * the walk: without it, sorted inserts leave a spine that every eviction
+	 * walks again in full.
+	 */
+	private void evict() {
+		while(weight() > capacity && root != null && (root.left != null || root.right != null)) {
+			boolean left = sizeOf(root.left) >= sizeOf(root.right);
+			BinaryNode node = left ? root.left : root.right;
+			while(node.left != null || node.right != null) {
+				node = sizeOf(node.left) >= sizeOf(node.right) ? node.left : node.right;
+			}
+			node = splay(node.element, left ? root.left : root.right);
+			BinaryNode rest = concat(node.left, node.right);
+			if(left) {
+				root.left = rest;
+			} else {
+				root.right = rest;
+			}
+			root.subtreeSize--;
+			track(node.element, false);
+			modCount++;
+			if(evictionListener != null) {
+				evictionListener.evicted(node.element);
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the weight and the hash index up to date with an element
+	 * entering or leaving the SplayTree
+	 */
+	private void track(T element, boolean entering) {
+		if(weigher != null) {
+			long w = weigher.weigh(element);
+			weight += entering ? w : -w;
+		}
+		if(index != null) {
+			if(entering) {
+				index.put(element);
+			} else {
+				index.remove(element);
+			}
+		}
+	}
+	
+	/**
+	 * Tracks every element of a subtree entering or leaving the SplayTree
+	 */
+	private void trackAll(BinaryNode node, boolean entering) {
+		if(node == null || (weigher == null && index == null)) {
+			return;
+		}
+		nodeStack list = new nodeStack();
+		list.push(node);
+		while(!list.isEmpty()) {
+			node = list.pop();
+			track(node.element, entering);
+			if(node.left != null) {
+				list.push(node.left);
+			}
+			if(node.right != null) {
+				list.push(node.right);
+			}
+		}
+	}
+	
+	/**
+	 * Recomputes the weight and rebuilds the hash index from scratch
+	 */
+	private void retrack() {
+		weight = 0;
+		if(index != null) {
+			index.clear();
+		}
+		trackAll(root, true);
+	}
+	
+	/**
+	 * Joins two subtrees where every element of lower is less than every
+	 * element of upper
+	 * 
+	 * @return 	the root of the joined subtree
+	 */
+	private BinaryNode concat(BinaryNode lower, BinaryNode upper) {
+		if(lower == null) {
+			return upper;
+		}
+		if(upper == null) {
+			return lower;
+		}
+		lower = splay(upper.element, lower);
+		lower.right = upper;
+		lower.subtreeSize += upper.subtreeSize;
+		return lower;
+	}
+	
 	/**
 	 * Find method that returns a pointer to the item provided
 	 * 
@@ -210,48 +1148,342 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * @return pointer to item if found; null if not found
 	 */
 	public T find(T item) {
-		leftTree = null;
-		rightTree = null;
 		if(item == null) {
 			throw new IllegalArgumentException();
 		}
-		if(root != null) {
-			root = assembleTree(root.splay(item));
-			
-			if(item.compareTo(root.element) == 0) {
-				return root.element;
+		if(index != null) {
+			return index.get(index.extractor().keyOf(item));
+		}
+		return access(item, null);
+	}
+	
+	/**
+	 * Find method that looks an element up by its key instead of by a
+	 * probe element, e.g. find("word", Entry.WORD). With a hash index on
+	 * the same extractor the element is looked up there and not splayed.
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return pointer to the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> T find(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		if(index != null && index.extractor() == extractor) {
+			return index.get(key);
+		}
+		return access(key, extractor);
+	}
+	
+	/**
+	 * Checks if the SplayTree has an element with the provided key
+	 * 
+	 * @param key	key of the element to look for
+	 * @param extractor	extracts the key from an element
+	 * @return 	true if an element has that key; false if not
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	public <K extends Comparable<? super K>> boolean containsKey(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		return find(key, extractor) != null;
+	}
+	
+	/**
+	 * Find method that does not splay. This is a plain binary search tree
+	 * lookup that leaves the SplayTree untouched, so any number of threads
+	 * may peek at once as long as nothing modifies the SplayTree.
+	 * 
+	 * @param item	item to be found
+	 * @return 	pointer to item if found; null if not found
+	 * @exception	IllegalArgumentException if item is null
+	 */
+	@SuppressWarnings("unchecked")
+	public T peek(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException();
+		}
+		return (T) peek(item, null, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Find method by key that does not splay, see peek(T)
+	 * 
+	 * @param key	key of the element to be found
+	 * @param extractor	extracts the key from an element
+	 * @return 	pointer to the element with that key if found; null if not found
+	 * @exception	IllegalArgumentException if key or extractor is null
+	 */
+	@SuppressWarnings("unchecked")
+	public <K extends Comparable<? super K>> T peek(K key, KeyExtractor<? extends K, ? super T> extractor) {
+		if(key == null || extractor == null) {
+			throw new IllegalArgumentException();
+		}
+		return (T) peek(key, extractor, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Non-splaying search that gives up below maxDepth. Never loops more
+	 * than maxDepth times, so it is safe to run optimistically while
+	 * another thread restructures the SplayTree as long as the result is
+	 * validated afterwards.
+	 * 
+	 * @param key	the key or item to search for
+	 * @param extractor	extracts the key from an element; null to compare elements
+	 * @param maxDepth	deepest level to search
+	 * @return 	the element found; null if not found; TOO_DEEP if the search
+	 * 			went below maxDepth
+	 */
+	Object peek(Object key, KeyExtractor<?, ? super T> extractor, int maxDepth) {
+		BinaryNode node = root;
+		for(int depth = 0; node != null; depth++) {
+			if(depth > maxDepth) {
+				return TOO_DEEP;
 			}
+			T element = node.element;
+			int compare = compare(key, extractor, element);
+			if(compare == 0) {
+				return element;
+			}
+			node = compare < 0 ? node.left : node.right;
 		}
 		return null;
 	}
 	
+	/**
+	 * Looks a key up for find and restructures the SplayTree as the policy
+	 * says. Any policy but ALWAYS first searches without splaying to learn
+	 * the depth of the access, recording the path for semi-splaying.
+	 * 
+	 * @param key	the key or item to look up
+	 * @param extractor	extracts the key from an element; null to compare elements
+	 * @return 	the element found; null if not found
+	 */
+	private T access(Object key, KeyExtractor<?, ? super T> extractor) {
+		if(root == null) {
+			return null;
+		}
+		if(policy == SplayPolicy.ALWAYS) {
+			root = splay(key, extractor, root);
+			return compare(key, extractor, root.element) == 0 ? root.element : null;
+		}
+		int depth = -1, compare = 0;
+		for(BinaryNode node = root; node != null; node = compare < 0 ? node.left : node.right) {
+			depth++;
+			pathAdd(depth, node);
+			compare = compare(key, extractor, node.element);
+			if(compare == 0) {
+				break;
+			}
+		}
+		T element = compare == 0 ? path[depth].element : null;
+		switch(policy.onAccess(depth, compare == 0)) {
+		case SPLAY:
+			root = splay(key, extractor, root);
+			break;
+		case SEMI_SPLAY:
+			semiSplay(depth);
+			break;
+		default:
+			break;
+		}
+		Arrays.fill(path, 0, depth + 1, null);
+		return element;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void pathAdd(int depth, BinaryNode node) {
+		if(path == null) {
+			path = (BinaryNode[]) new SplayTree.BinaryNode[32];
+		} else if(depth == path.length) {
+			path = Arrays.copyOf(path, depth * 2);
+		}
+		path[depth] = node;
+	}
+	
+	/**
+	 * Bottom-up semi-splay of the node at the end of the recorded path.
+	 * A zig-zig step rotates the parent over the grandparent and carries on
+	 * from the parent; a zig-zag step rotates the node up twice as in a
+	 * splay and carries on from the node. Stops when fewer than two
+	 * ancestors remain, roughly halving the depth of every node on the path.
+	 * 
+	 * @param depth	index of the accessed node in path
+	 */
+	private void semiSplay(int depth) {
+		shapeCount++;
+		int i = depth;
+		while(i >= 2) {
+			BinaryNode node = path[i], parent = path[i - 1], grand = path[i - 2];
+			BinaryNode top;
+			if((parent.left == node) == (grand.left == parent)) {
+				// zig-zig: rotate parent over grandparent, continue from parent
+				rotateUp(parent, grand);
+				top = parent;
+			} else {
+				// zig-zag: rotate node over parent and then over grandparent
+				rotateUp(node, parent);
+				if(grand.left == parent) {
+					grand.left = node;
+				} else {
+					grand.right = node;
+				}
+				rotateUp(node, grand);
+				top = node;
+			}
+			if(i == 2) {
+				root = top;
+			} else if(path[i - 3].left == grand) {
+				path[i - 3].left = top;
+			} else {
+				path[i - 3].right = top;
+			}
+			i -= 2;
+			path[i] = top;
+		}
+	}
+	
+	/**
+	 * Rotates child over parent, fixing both sizes. The caller relinks
+	 * child into parent's old place.
+	 */
+	private void rotateUp(BinaryNode child, BinaryNode parent) {
+		if(parent.left == child) {
+			parent.left = child.right;
+			child.right = parent;
+		} else {
+			parent.right = child.left;
+			child.left = parent;
+		}
+		child.subtreeSize = parent.subtreeSize;
+		parent.subtreeSize = 1 + sizeOf(parent.left) + sizeOf(parent.right);
+	}
+	
+	/**
+	 * Top-down splay of the subtree rooted at node on item. The nodes
+	 * passed on the way down are relinked in place onto a left tree (all
+	 * smaller than item) and a right tree (all larger than item); the tail
+	 * of each is remembered so linking and the final assembly are O(1) and
+	 * no nodes are allocated. Subtree sizes of the relinked nodes are
+	 * corrected with one pass down each assembly tree afterwards.
+	 * 
+	 * @param item	the item to splay on
+	 * @param node	root of the subtree to splay; must not be null
+	 * @return 	the new root of the subtree, holding item if it was present
+	 * 			or else the last node visited while searching for it
+	 */
+	private BinaryNode splay(T item, BinaryNode node) {
+		return splay(item, null, node);
+	}
 	
-	private BinaryNode assembleTree(BinaryNode node) {
-		BinaryNode A = node.left;
-		BinaryNode B = node.right;
+	/**
+	 * Top-down splay on a key. With a null extractor the key is an element
+	 * and is compared to the elements directly.
+	 * 
+	 * @param key	the key or item to splay on
+	 * @param extractor	extracts the key from an element; null to compare elements
+	 * @param node	root of the subtree to splay; must not be null
+	 * @return 	the new root of the subtree
+	 */
+	private BinaryNode splay(Object key, KeyExtractor<?, ? super T> extractor, BinaryNode node) {
+		shapeCount++;
+		BinaryNode leftTree = null, leftMax = null;
+		BinaryNode rightTree = null, rightMin = null;
+		int leftSize = 0, rightSize = 0;
+		while(true) {
+			int compare = compare(key, extractor, node.element);
+			if(compare < 0) {
+				if(node.left == null) {
+					break;
+				}
+				if(compare(key, extractor, node.left.element) < 0) {
+					// zig-zig: rotate right before linking
+					BinaryNode child = node.left;
+					node.left = child.right;
+					child.right = node;
+					node.subtreeSize = 1 + sizeOf(node.left) + sizeOf(node.right);
+					node = child;
+					if(node.left == null) {
+						break;
+					}
+				}
+				// link right
+				if(rightTree == null) {
+					rightTree = node;
+				} else {
+					rightMin.left = node;
+				}
+				rightMin = node;
+				rightSize += 1 + sizeOf(node.right);
+				node = node.left;
+			} else if(compare > 0) {
+				if(node.right == null) {
+					break;
+				}
+				if(compare(key, extractor, node.right.element) > 0) {
+					// zig-zig: rotate left before linking
+					BinaryNode child = node.right;
+					node.right = child.left;
+					child.left = node;
+					node.subtreeSize = 1 + sizeOf(node.left) + sizeOf(node.right);
+					node = child;
+					if(node.right == null) {
+						break;
+					}
+				}
+				// link left
+				if(leftTree == null) {
+					leftTree = node;
+				} else {
+					leftMax.right = node;
+				}
+				leftMax = node;
+				leftSize += 1 + sizeOf(node.left);
+				node = node.right;
+			} else {
+				break;
+			}
+		}
+		leftSize += sizeOf(node.left);
+		rightSize += sizeOf(node.right);
+		node.subtreeSize = leftSize + rightSize + 1;
+		// fix sizes down the right spine of the left tree and vice versa
+		if(leftTree != null) {
+			leftMax.right = null;
+			for(BinaryNode spine = leftTree; spine != null; spine = spine.right) {
+				spine.subtreeSize = leftSize;
+				leftSize -= 1 + sizeOf(spine.left);
+			}
+		}
+		if(rightTree != null) {
+			rightMin.left = null;
+			for(BinaryNode spine = rightTree; spine != null; spine = spine.left) {
+				spine.subtreeSize = rightSize;
+				rightSize -= 1 + sizeOf(spine.right);
+			}
+		}
+		// assemble
 		if(leftTree != null) {
+			leftMax.right = node.left;
 			node.left = leftTree;
-			findMax(leftTree).right = A;
 		}
 		if(rightTree != null) {
+			rightMin.left = node.right;
 			node.right = rightTree;
-			findMin(rightTree).left = B;
 		}
 		return node;
 	}
 	
-	private BinaryNode findMin(BinaryNode node) {
-		while(node.left != null) {
-			node = node.left;
-		}
-		return node;
+	private int sizeOf(BinaryNode node) {
+		return node == null ? 0 : node.subtreeSize;
 	}
 	
-	private BinaryNode findMax(BinaryNode node) {
-		while(node.right != null) {
-			node = node.right;
+	@SuppressWarnings("unchecked")
+	private int compare(Object key, KeyExtractor<?, ? super T> extractor, T element) {
+		if(extractor == null) {
+			return ((T) key).compareTo(element);
 		}
-		return node;
+		return ((Comparable<Object>) key).compareTo(extractor.keyOf(element));
 	}
 	
 	/**
@@ -260,8 +1492,9 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * 
 	 */
 	public class BinaryNode {
-		private T element;
+		private final T element;
 		private BinaryNode left,right;
+		private int subtreeSize;
 		
 		/**
 		 * Constructs a BinaryNode
@@ -273,6 +1506,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 			element = initelement;
 			left = null;
 			right = null;
+			subtreeSize = 1;
 		}
 		
 		/**
@@ -285,176 +1519,62 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 		}
 		
 		/**
-		 * Recursive method that returns an ArrayList of the BinaryNode and its children
+		 * Method that returns an ArrayList of the BinaryNode and its children
+		 * in order. Walks the subtree with an explicit stack so a degenerate
+		 * (chain shaped) tree cannot overflow the call stack.
 		 * 
 		 * @param list	the ArrayList that elements should be added onto
 		 * @return 	ArrayList of the BinaryNode and its children
 		 */
 		public ArrayList<T> toArrayList(ArrayList<T> list) {
-			if(left != null) {
-				left.toArrayList(list);
-			}
-			list.add(element);
-			if(right != null) {
-				right.toArrayList(list);
+			ArrayDeque<BinaryNode> stack = new ArrayDeque<BinaryNode>();
+			BinaryNode node = this;
+			while(node != null || !stack.isEmpty()) {
+				while(node != null) {
+					stack.push(node);
+					node = node.left;
+				}
+				node = stack.pop();
+				list.add(node.element);
+				node = node.right;
 			}
 			return list;
 		}
 		
 		/**
-		 * Method that determines the height of the BinaryNode
+		 * Method that determines the height of the BinaryNode by walking
+		 * it one level at a time
 		 * 
 		 * @return 	height of the BinaryNode
 		 */
 		public int height() {
-			int leftheight = 0, rightheight = 0;
-			if(left != null) {
-				leftheight = 1 + left.height();
-			}
-			if(right != null) {
-				rightheight = 1 + right.height();
-			}
-			if(leftheight > rightheight) {
-				return leftheight;
-			} else { 
-				return rightheight;
+			ArrayDeque<BinaryNode> level = new ArrayDeque<BinaryNode>();
+			level.add(this);
+			int height = -1;
+			while(!level.isEmpty()) {
+				height++;
+				for(int i = level.size(); i > 0; i--) {
+					BinaryNode node = level.poll();
+					if(node.left != null) {
+						level.add(node.left);
+					}
+					if(node.right != null) {
+						level.add(node.right);
+					}
+				}
 			}
+			return height;
 		}
 		
 		/**
-		 * Method that determines the size of the BinaryNode 
+		 * Method that determines the size of the BinaryNode. The size is
+		 * kept up to date by every rotation, so this is constant time.
 		 * 
 		 * @return 	size of the BinaryNode
 		 */
 		public int size() {
-			int size = 1;
-			if(left != null) {
-				size += left.size();
-			}
-			if(right != null) {
-				size += right.size();
-			}
-			return size;
-		}
-		
-		
-		/**
-		 * 
-		 * @param item The item to splay on
-		 * @return BinaryNode 
-		 */
-		private BinaryNode splay(T item) {
-			int thisCompare = item.compareTo(element);
-			if(thisCompare == 0) {
-				return this;
-			} else if(thisCompare < 0) {	
-				if(left != null && left.left != null && item.compareTo(left.element) < 0) {
-					return this.rightZigZig(this).splay(item);
-				} else if((left != null && left.left == null && item.compareTo(left.element) <= 0) || (left != null && item.compareTo(left.element) > 0)){
-					return this.rightZig(this).splay(item);
-				} else {
-					//return parent
-					return this;
-				}
-			} else {
-				if(right != null && right.right != null && item.compareTo(right.element) > 0 ){
-					return this.leftZigZig(this).splay(item);
-				} else if((right != null && right.right == null && item.compareTo(right.element) >= 0) || (right != null && item.compareTo(right.element) < 0)) {
-					return this.leftZig(this).splay(item);
-				} else {
-					//return parent
-					return this;
-				}
-			}
-		}
-		
-		/**
-		 * Method that rotates the tree right around the specified
-		 * AVLNode left child.
-		 * 
-		 * @param node The node to rotate around
-		 * @return node An AVLNode that has been rotated
-		 */
-		public BinaryNode rightZig(BinaryNode node) {
-			//System.out.println("rightzig");
-			BinaryNode x = new BinaryNode(node.element);
-			x.right = node.right;
-			BinaryNode y = node.left;
-			
-			if(rightTree != null) {
-				findMin(rightTree).left = x;
-			} else {
-				rightTree = new BinaryNode(x.element);
-				rightTree.right = x.right;
-			}
-			return y;
-		}
-		
-		/**
-		 * Method that rotates the tree left around the specified
-		 * BinaryNode right child.
-		 * @param node The node to rotate around
-		 * @return node An BinaryNode that has been rotated
-		 */
-		public BinaryNode leftZig(BinaryNode node) {
-			//System.out.println("leftzig");
-			BinaryNode x = new BinaryNode(node.element);
-			x.left = node.left;
-			BinaryNode y = node.right;
-			
-			if(leftTree != null) {
-				findMax(leftTree).right = x;
-			} else {
-				leftTree = new BinaryNode(x.element);
-				leftTree.left = x.left;
-			}
-			return y;
-		}
-		
-		public BinaryNode rightZigZig(BinaryNode node) {
-			//System.out.println("rightzigzig");
-			BinaryNode x = new BinaryNode(node.element);
-			x.right = node.right;
-			if(node.left.right != null) {
-				x.left = node.left.right;
-			} else {
-				x.left = null;
-			}
-			BinaryNode y = new BinaryNode(node.left.element);
-			y.right = x;
-			
-			BinaryNode z = node.left.left;
-			if(rightTree != null) {
-				findMin(rightTree).left = y;
-			} else {
-				rightTree = new BinaryNode(y.element);
-				rightTree.right = x;
-			}
-			return z;
-		}
-		
-		public BinaryNode leftZigZig(BinaryNode node) {
-			//System.out.println("leftzigzig");
-			BinaryNode x = new BinaryNode(node.element);
-			x.left = node.left;
-			if(node.right.left != null) {
-				x.right = node.right.left;
-			} else {
-				x.right = null;
-			}
-			BinaryNode y = new BinaryNode(node.right.element);
-			y.left = x;
-			
-			BinaryNode z = node.right.right;
-			if(leftTree != null) {
-				findMax(leftTree).right = y;
-			} else {
-				leftTree = new BinaryNode(y.element);
-				leftTree.left = x;
-			}
-			return z;
+			return subtreeSize;
 		}
-
 	}
 	
 	/**
@@ -463,7 +1583,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * 
 	 */
 	private class preOrderTreeIterator implements Iterator<BinaryNode> {
-		private Stack<BinaryNode> list = new Stack<BinaryNode>();
+		protected nodeStack list = new nodeStack();
 		private BinaryNode node = null;
 		private int mod;
 		
@@ -486,7 +1606,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 		 * @return	true if there is another element to return; false if not
 		 */
 		public boolean hasNext() {
-			return !list.empty();
+			return !list.isEmpty();
 		}
 
 		/**
@@ -502,7 +1622,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 			}
 			BinaryNode item = null;
 			
-			if(!list.empty()) {
+			if(!list.isEmpty()) {
 				item = list.pop();
 			} else {
 				throw new NoSuchElementException();
@@ -529,7 +1649,6 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 			}
 			if(SplayTree.this.remove(node.element)) {
 				node = null;
-				mod++;
 			}
 		}
 	}
@@ -540,19 +1659,22 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 	 * 
 	 */
 	private class inOrderTreeIterator implements Iterator<T> {
-		private Stack<BinaryNode> list = new Stack<BinaryNode>();
+		protected nodeStack list = new nodeStack();
 		private BinaryNode node = null;
 		private int mod;
+		private final boolean ascending;
 		
 		/**
 		 * Constructs an inOrderTreeIterator
 		 * Sets the modification boolean flag to false
 		 * 
 		 * @param node	BinaryNode to start the iterator from
+		 * @param ascending	true to go from smallest to largest; false for the reverse
 		 */
-		public inOrderTreeIterator(BinaryNode node) {
+		public inOrderTreeIterator(BinaryNode node, boolean ascending) {
 			this.mod = modCount;
-			checkLeft(node);
+			this.ascending = ascending;
+			checkFirst(node);
 		}
 		
 		/**
@@ -561,7 +1683,7 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 		 * @return 	true if there is another element to return; false if not
 		 */
 		public boolean hasNext() {
-			return !list.empty();
+			return !list.isEmpty();
 		}
 		
 		/**
@@ -576,40 +1698,475 @@ public class SplayTree<T extends Comparable<? super T>> implements Iterable<Spla
 				throw new ConcurrentModificationException();
 			}
 			BinaryNode item = null;
-			if(list.empty()) {
+			if(list.isEmpty()) {
 				throw new NoSuchElementException();
 			}
 			item = list.pop();
-			checkLeft(item.right);
+			checkFirst(ascending ? item.right : item.left);
 			node = item;
 			return item.element;
 		}
 
 		/**
-		 * Checks if the provided BinaryNode has a left child
+		 * Stacks the provided BinaryNode and its chain of left children, or
+		 * right children when descending, down to the first one to visit
 		 * 
-		 * @param node	node to to check if it has a left child
+		 * @param node	node to start the chain from
 		 */
-		public void checkLeft(BinaryNode node) {
+		public void checkFirst(BinaryNode node) {
 			while(node != null) {
 				list.push(node);
-				node = node.left;
+				node = ascending ? node.left : node.right;
 			}
 		}
 		
 		/**
-		 * Removes an element from the SplayTree
+		 * Removes the last element returned from the SplayTree. Removing
+		 * splays the SplayTree, so the stack is rebuilt with one descent to
+		 * the elements after the removed one.
 		 * 
 		 * @exception	IllegalStateException if next() not called before
+		 * @exception 	ConcurrentModificationException if the SplayTree was modified after initializing the iterator
 		 */
 		public void remove() {
 			if(node == null) {
 				throw new IllegalStateException();
 			}
-			if(SplayTree.this.remove(node.element)) {
-				node = null;
-				mod++;
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			T element = node.element;
+			node = null;
+			SplayTree.this.remove(element);
+			mod = modCount;
+			list.clear();
+			BinaryNode next = root;
+			while(next != null) {
+				int compare = element.compareTo(next.element);
+				if(ascending ? compare < 0 : compare > 0) {
+					list.push(next);
+					next = ascending ? next.left : next.right;
+				} else {
+					next = ascending ? next.right : next.left;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A level order SplayTree iterator, level by level from the root and
+	 * left to right within a level
+	 * 
+	 */
+	private class levelOrderTreeIterator implements Iterator<T> {
+		private ArrayDeque<BinaryNode> queue = new ArrayDeque<BinaryNode>();
+		private int mod;
+		
+		/**
+		 * Constructs a levelOrderTreeIterator
+		 * 
+		 * @param node	BinaryNode to start the iterator from
+		 */
+		public levelOrderTreeIterator(BinaryNode node) {
+			this.mod = modCount;
+			if(node != null) {
+				queue.add(node);
+			}
+		}
+		
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+		
+		/**
+		 * Method that returns the next element of the SplayTree in level order
+		 * 
+		 * @return 	element in the SplayTree
+		 * @exception 	ConcurrentModificationException if the SplayTree was modified after initializing the iterator
+		 * @exception 	NoSuchElementException if there are no more elements to return
+		 */
+		public T next() {
+			if(this.mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			BinaryNode item = queue.poll();
+			if(item == null) {
+				throw new NoSuchElementException();
+			}
+			if(item.left != null) {
+				queue.add(item.left);
+			}
+			if(item.right != null) {
+				queue.add(item.right);
+			}
+			return item.element;
+		}
+		
+		/**
+		 * Not supported: removing splays the SplayTree, after which there is
+		 * no level order position left to continue from
+		 * 
+		 * @exception	UnsupportedOperationException always
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * An in order SplayTree iterator over the elements from a lower bound
+	 * for as long as they stay in range
+	 * 
+	 */
+	private abstract class rangeTreeIterator extends inOrderTreeIterator {
+		
+		/**
+		 * Constructs a rangeTreeIterator. Splays on the lower bound and stacks
+		 * the path down to the first element at or above it.
+		 * 
+		 * @param key	the key or item of the lower bound
+		 * @param extractor	extracts the key from an element; null to compare elements
+		 */
+		public rangeTreeIterator(Object key, KeyExtractor<?, ? super T> extractor) {
+			super(null, true);
+			if(root != null) {
+				root = splay(key, extractor, root);
+			}
+			BinaryNode node = root;
+			while(node != null) {
+				if(compare(key, extractor, node.element) <= 0) {
+					list.push(node);
+					node = node.left;
+				} else {
+					node = node.right;
+				}
+			}
+		}
+		
+		/**
+		 * Checks if an element is still in the range being iterated
+		 * 
+		 * @param element	the next element in order
+		 * @return 	true if the element is in range; false to stop
+		 */
+		protected abstract boolean inRange(T element);
+		
+		public boolean hasNext() {
+			return super.hasNext() && inRange(list.peek().element);
+		}
+		
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return super.next();
+		}
+	}
+	
+	/**
+	 * A bidirectional cursor over the SplayTree. The cursor keeps the path
+	 * from the root down to its element, so a step to a neighbour only
+	 * walks the nodes between the two, which is amortized O(1) over a run of
+	 * steps. Seeking splays once on the key; stepping does not splay. When
+	 * other accesses have splayed the SplayTree since the last call the path
+	 * is rebuilt with one descent from the root.
+	 * 
+	 */
+	public class Cursor {
+		private nodeStack stack = new nodeStack();
+		private BinaryNode node = null;
+		private boolean afterLast = false;
+		private int mod;
+		private int shape;
+		
+		/**
+		 * Constructs a Cursor positioned before the first element
+		 */
+		private Cursor() {
+			this.mod = modCount;
+			this.shape = shapeCount;
+		}
+		
+		/**
+		 * Moves the Cursor to the least element greater than or equal to item.
+		 * Clears any earlier modification of the SplayTree.
+		 * 
+		 * @param item	the item to seek
+		 * @return 	the element the Cursor is on; null if it is after the last
+		 * @exception	IllegalArgumentException if item is null
+		 */
+		public T seek(T item) {
+			return position(item, null);
+		}
+		
+		/**
+		 * Moves the Cursor to the first element whose key is greater than or
+		 * equal to key. Clears any earlier modification of the SplayTree.
+		 * 
+		 * @param key	the key to seek
+		 * @param extractor	extracts the key from an element
+		 * @return 	the element the Cursor is on; null if it is after the last
+		 * @exception	IllegalArgumentException if key or extractor is null
+		 */
+		public <K extends Comparable<? super K>> T seek(K key, KeyExtractor<? extends K, ? super T> extractor) {
+			if(extractor == null) {
+				throw new IllegalArgumentException();
+			}
+			return position(key, extractor);
+		}
+		
+		private T position(Object key, KeyExtractor<?, ? super T> extractor) {
+			BinaryNode found = successor(key, extractor, true);
+			stack.clear();
+			if(found != null && found != root) {
+				stack.push(root);
+			}
+			node = found;
+			afterLast = found == null;
+			mod = modCount;
+			shape = shapeCount;
+			return elementOf(found);
+		}
+		
+		/**
+		 * Returns the element the Cursor is on without moving it
+		 * 
+		 * @return 	the current element; null if before the first or after the last
+		 * @exception 	ConcurrentModificationException if the SplayTree was modified
+		 */
+		public T peek() {
+			if(mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			return elementOf(node);
+		}
+		
+		/**
+		 * Moves the Cursor to the next element in order
+		 * 
+		 * @return 	the next element; null if the Cursor moved after the last
+		 * @exception 	ConcurrentModificationException if the SplayTree was modified
+		 */
+		public T next() {
+			return step(true);
+		}
+		
+		/**
+		 * Moves the Cursor to the previous element in order
+		 * 
+		 * @return 	the previous element; null if the Cursor moved before the first
+		 * @exception 	ConcurrentModificationException if the SplayTree was modified
+		 */
+		public T prev() {
+			return step(false);
+		}
+		
+		private T step(boolean forward) {
+			sync();
+			if(node == null) {
+				if(afterLast != forward && root != null) {
+					descend(root, forward);
+				}
+				return elementOf(node);
+			}
+			BinaryNode child = forward ? node.right : node.left;
+			if(child != null) {
+				stack.push(node);
+				descend(child, forward);
+				return node.element;
+			}
+			BinaryNode from = node;
+			while(!stack.isEmpty()) {
+				BinaryNode parent = stack.pop();
+				if((forward ? parent.left : parent.right) == from) {
+					node = parent;
+					return node.element;
+				}
+				from = parent;
+			}
+			node = null;
+			afterLast = forward;
+			return null;
+		}
+		
+		/**
+		 * Moves the Cursor to the leftmost node under start, or the rightmost
+		 * when going backwards
+		 */
+		private void descend(BinaryNode start, boolean leftmost) {
+			BinaryNode child;
+			while((child = leftmost ? start.left : start.right) != null) {
+				stack.push(start);
+				start = child;
+			}
+			node = start;
+		}
+		
+		/**
+		 * Checks for modification and rebuilds the path if the SplayTree was
+		 * restructured by splaying since the last call
+		 */
+		private void sync() {
+			if(mod != modCount) {
+				throw new ConcurrentModificationException();
 			}
+			if(shape != shapeCount) {
+				shape = shapeCount;
+				stack.clear();
+				if(node != null) {
+					BinaryNode n = root;
+					while(n != node) {
+						stack.push(n);
+						n = node.element.compareTo(n.element) < 0 ? n.left : n.right;
+					}
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * A Spliterator over the elements with in order positions index up to
+	 * fence. The in order stack is seeded lazily by descending on the rank,
+	 * so splitting just halves the range and costs nothing until traversal.
+	 * 
+	 */
+	private class rankSpliterator implements Spliterator<T> {
+		private nodeStack list = null;
+		private int index;
+		private final int fence;
+		private final int mod;
+		private int shape;
+		
+		/**
+		 * Constructs a rankSpliterator
+		 * 
+		 * @param index	position of the first element to return
+		 * @param fence	position after the last element to return
+		 */
+		public rankSpliterator(int index, int fence) {
+			this.index = index;
+			this.fence = fence;
+			this.mod = modCount;
+		}
+		
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if(action == null) {
+				throw new NullPointerException();
+			}
+			if(mod != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(index >= fence) {
+				return false;
+			}
+			if(list == null || shape != shapeCount) {
+				seek();
+			}
+			BinaryNode item = list.pop();
+			for(BinaryNode node = item.right; node != null; node = node.left) {
+				list.push(node);
+			}
+			index++;
+			action.accept(item.element);
+			return true;
+		}
+		
+		public Spliterator<T> trySplit() {
+			int middle = (index + fence) >>> 1;
+			if(middle <= index) {
+				return null;
+			}
+			Spliterator<T> prefix = new rankSpliterator(index, middle);
+			index = middle;
+			list = null;
+			return prefix;
+		}
+		
+		public long estimateSize() {
+			return fence - index;
+		}
+		
+		public int characteristics() {
+			return SORTED | ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+		}
+		
+		/**
+		 * Elements are in their natural order
+		 * 
+		 * @return 	null
+		 */
+		public Comparator<? super T> getComparator() {
+			return null;
+		}
+		
+		/**
+		 * Stacks the path from the root to the element at position index,
+		 * keeping the nodes the walk goes left at
+		 */
+		private void seek() {
+			if(list == null) {
+				list = new nodeStack();
+			} else {
+				list.clear();
+			}
+			shape = shapeCount;
+			int k = index;
+			BinaryNode node = root;
+			while(node != null) {
+				int leftSize = sizeOf(node.left);
+				if(k <= leftSize) {
+					list.push(node);
+					if(k == leftSize) {
+						break;
+					}
+					node = node.left;
+				} else {
+					k -= leftSize + 1;
+					node = node.right;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * An unsynchronized array stack of BinaryNodes for the iterators and
+	 * the Cursor. Unlike java.util.Stack it takes no monitor per call.
+	 * 
+	 */
+	private class nodeStack {
+		private BinaryNode[] nodes;
+		private int size = 0;
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public nodeStack() {
+			nodes = (BinaryNode[]) new SplayTree.BinaryNode[32];
+		}
+		
+		public void push(BinaryNode node) {
+			if(size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			nodes[size++] = node;
+		}
+		
+		public BinaryNode pop() {
+			BinaryNode node = nodes[--size];
+			nodes[size] = null;
+			return node;
+		}
+		
+		public BinaryNode peek() {
+			return nodes[size - 1];
+		}
+		
+		public boolean isEmpty() {
+			return size == 0;
+		}
+		
+		public void clear() {
+			Arrays.fill(nodes, 0, size, null);
+			size = 0;
 		}
 	}
 }
@@ -1,6 +1,26 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import junit.framework.TestCase;
 
@@ -347,6 +367,1514 @@ public static int points = 0;
 		points += 13;
 	}
 	
+	public void testDictionaryFindByWord(){
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		s.insert(new Entry("tree", "green"));
+		s.insert(new Entry("fun", "data structures"));
+		s.insert(new Entry("hmm", "donuts"));
+		s.insert(new Entry("tree", "balanced"));
+		
+		Entry tree = s.find("tree", Entry.WORD);
+		assertNotNull(tree);
+		assertEquals("tree", tree.getEntry());
+		assertEquals(2, tree.getDefinitions().size());
+		assertSame(tree, s.toArrayList().get(0));
+		
+		assertTrue(s.containsKey("fun", Entry.WORD));
+		assertFalse(s.containsKey("gum", Entry.WORD));
+		assertNull(s.find("zebra", Entry.WORD));
+		assertEquals(3, s.size());
+		
+		Iterator<Entry> i = s.inOrderIterator();
+		assertEquals("fun", i.next().getEntry());
+		assertEquals("hmm", i.next().getEntry());
+		assertEquals("tree", i.next().getEntry());
+	}
+	
+	
+///////////////test of size and order statistics
+	
+	public void testSizeIsMaintained(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		assertEquals(0, s.size());
+		s.insert(5);
+		s.insert(3);
+		s.insert(8);
+		assertFalse(s.insert(3));
+		assertEquals(3, s.size());
+		s.find(8);
+		s.find(4);
+		assertEquals(3, s.size());
+		assertTrue(s.remove(5));
+		assertFalse(s.remove(5));
+		assertEquals(2, s.size());
+		assertEquals(s.toArrayList().size(), s.size());
+	}
+	
+	public void testRankAndSelect(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		Random random = new Random(42);
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for(int i = 0; i < 2000; i++) {
+			int value = random.nextInt(5000);
+			if(random.nextInt(4) == 0) {
+				assertEquals(expected.remove(value), s.remove(value));
+			} else {
+				assertEquals(expected.add(value), s.insert(value));
+			}
+			s.find(random.nextInt(5000));
+		}
+		assertEquals(expected.size(), s.size());
+		
+		ArrayList<Integer> sorted = new ArrayList<Integer>(expected);
+		for(int k = 0; k < sorted.size(); k++) {
+			assertEquals(sorted.get(k), s.select(k));
+			assertEquals(k, s.rank(sorted.get(k)));
+		}
+		assertEquals(0, s.rank(-1));
+		assertEquals(sorted.size(), s.rank(5000));
+		assertEquals(expected.headSet(2500).size(), s.rank(2500));
+		
+		assertEquals(sorted.subList(10, 110), s.subList(10, 110));
+		assertEquals(sorted, s.subList(0, s.size()));
+		assertTrue(s.subList(7, 7).isEmpty());
+		try {
+			s.select(s.size());
+			fail();
+		} catch(IndexOutOfBoundsException e) {
+		}
+	}
+	
+///////////////test of the concurrent dictionary
+	
+	public void testConcurrentDictionary() throws InterruptedException {
+		final ConcurrentSplayDictionary<Integer> d = new ConcurrentSplayDictionary<Integer>(3);
+		assertEquals(4, d.shardCount());
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for(int i = offset; i < 4000; i += 4) {
+						d.insert(i);
+					}
+					for(int i = offset; i < 4000; i += 8) {
+						d.remove(i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(2000, d.size());
+		assertNull(d.find(0));
+		assertEquals(Integer.valueOf(4), d.find(4));
+		
+		Iterator<Integer> i = d.iterator();
+		for(int expected = 0; expected < 4000; expected++) {
+			if(expected % 8 >= 4) {
+				assertEquals(Integer.valueOf(expected), i.next());
+			}
+		}
+		assertFalse(i.hasNext());
+	}
+	
+	public void testConcurrentDictionaryOfEntries(){
+		ConcurrentSplayDictionary<Entry> d = new ConcurrentSplayDictionary<Entry>(4);
+		d.insert(new Entry("tree", "green"));
+		d.insert(new Entry("fun", "data structures"));
+		d.insert(new Entry("tree", "balanced"));
+		assertEquals(2, d.size());
+		assertEquals(2, d.find("tree", Entry.WORD).getDefinitions().size());
+		assertFalse(d.containsKey("hmm", Entry.WORD));
+		Iterator<Entry> i = d.iterator();
+		assertEquals("fun", i.next().getEntry());
+		assertEquals("tree", i.next().getEntry());
+		assertFalse(i.hasNext());
+	}
+	
+	public void testCombiningSplayTree() throws InterruptedException {
+		final CombiningSplayTree<Integer> c = new CombiningSplayTree<Integer>();
+		final boolean[] failed = new boolean[1];
+		Thread[] threads = new Thread[8];
+		for(int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for(int i = offset; i < 8000; i += 8) {
+						if(!c.insert(i) || c.find(i) == null) {
+							failed[0] = true;
+						}
+					}
+					for(int i = offset; i < 8000; i += 16) {
+						if(!c.remove(i)) {
+							failed[0] = true;
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertFalse(failed[0]);
+		assertEquals(4000, c.size());
+		assertNull(c.find(0));
+		assertEquals(Integer.valueOf(8), c.find(8));
+		try {
+			c.insert(null);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+		
+		CombiningSplayTree<Entry> d = new CombiningSplayTree<Entry>();
+		d.insert(new Entry("tree", "green"));
+		assertEquals("tree", d.find("tree", Entry.WORD).getEntry());
+		
+		KeyExtractor<String, Entry> broken = new KeyExtractor<String, Entry>() {
+			public String keyOf(Entry element) {
+				throw new StackOverflowError();
+			}
+		};
+		try {
+			d.find("tree", broken);
+			fail();
+		} catch(IllegalStateException e) {
+			assertTrue(e.getCause() instanceof StackOverflowError);
+		}
+		assertEquals(1, d.size());
+	}
+	
+	public void testOptimisticSplayTree() throws InterruptedException {
+		final OptimisticSplayTree<Integer> o = new OptimisticSplayTree<Integer>(new SplayTree<Integer>(), 8, 4);
+		for(int i = 0; i < 1000; i += 2) {
+			assertTrue(o.insert(i));
+		}
+		assertEquals(500, o.size());
+		assertEquals(Integer.valueOf(0), o.find(0));
+		assertNull(o.find(1));
+		
+		final boolean[] failed = new boolean[1];
+		Thread writer = new Thread() {
+			public void run() {
+				for(int i = 1; i < 1000; i += 2) {
+					o.insert(i);
+				}
+			}
+		};
+		Thread[] readers = new Thread[4];
+		for(int t = 0; t < readers.length; t++) {
+			readers[t] = new Thread() {
+				public void run() {
+					for(int n = 0; n < 20; n++) {
+						for(int i = 0; i < 1000; i += 2) {
+							Integer found = o.find(i);
+							if(found == null || found.intValue() != i) {
+								failed[0] = true;
+							}
+						}
+					}
+				}
+			};
+		}
+		writer.start();
+		for(Thread reader : readers) {
+			reader.start();
+		}
+		writer.join();
+		for(Thread reader : readers) {
+			reader.join();
+		}
+		assertFalse(failed[0]);
+		assertEquals(1000, o.size());
+		assertTrue(o.remove(999));
+		assertNull(o.find(999));
+		
+		OptimisticSplayTree<Entry> d = new OptimisticSplayTree<Entry>();
+		d.insert(new Entry("tree", "green"));
+		assertEquals("tree", d.find("tree", Entry.WORD).getEntry());
+		assertNull(d.find("fun", Entry.WORD));
+	}
+	
+	public void testPeekDoesNotSplay(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		s.insert(5);
+		s.insert(3);
+		s.insert(2);
+		s.insert(1);
+		ArrayList<Object> before = s.toArrayList();
+		assertEquals(Integer.valueOf(5), s.peek(5));
+		assertNull(s.peek(4));
+		assertEquals(before, s.toArrayList());
+	}
+	
+///////////////test of splay policies
+	
+	public void testNoSplayOnMiss(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		s.setSplayPolicy(SplayPolicy.HITS_ONLY);
+		s.insert(9);
+		s.insert(7);
+		s.insert(5);
+		s.insert(3);
+		s.insert(1);
+		ArrayList<Object> before = s.toArrayList();
+		assertNull(s.find(8));
+		assertEquals(before, s.toArrayList());
+		
+		// a hit still splays
+		assertEquals(Integer.valueOf(9), s.find(9));
+		assertEquals(9, s.toArrayList().get(0));
+	}
+	
+	public void testDepthAndProbabilityPolicies(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 1; i <= 5; i++) {
+			s.insert(i);
+		}
+		// 5 at the root, 1 at depth 4
+		s.setSplayPolicy(SplayPolicy.deeperThan(3));
+		assertEquals(Integer.valueOf(4), s.find(4));
+		assertEquals(5, s.toArrayList().get(0));
+		assertEquals(Integer.valueOf(1), s.find(1));
+		assertEquals(1, s.toArrayList().get(0));
+		
+		s.setSplayPolicy(SplayPolicy.probability(0));
+		assertEquals(Integer.valueOf(5), s.find(5));
+		assertEquals(1, s.toArrayList().get(0));
+		s.setSplayPolicy(SplayPolicy.probability(1));
+		assertEquals(Integer.valueOf(5), s.find(5));
+		assertEquals(5, s.toArrayList().get(0));
+		try {
+			SplayPolicy.probability(2);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+	}
+	
+	public void testSemiSplay(){
+		// a chain 7, 6, ..., 1 down the left
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 1; i <= 7; i++) {
+			s.insert(i);
+		}
+		assertEquals(6, s.height());
+		s.setSplayPolicy(SplayPolicy.SEMI_SPLAY);
+		assertEquals(Integer.valueOf(1), s.find(1));
+		ArrayList<Object> test = new ArrayList<Object>();
+		test.add(6);
+		test.add(4);
+		test.add(2);
+		test.add(1);
+		test.add(3);
+		test.add(5);
+		test.add(7);
+		assertEquals(test, s.toArrayList());
+		assertEquals(3, s.height());
+		
+		Random random = new Random(7);
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for(int i = 1; i <= 7; i++) {
+			expected.add(i);
+		}
+		for(int i = 0; i < 2000; i++) {
+			int value = random.nextInt(3000);
+			assertEquals(expected.add(value), s.insert(value));
+			int probe = random.nextInt(3000);
+			assertEquals(expected.contains(probe), s.find(probe) != null);
+		}
+		ArrayList<Integer> sorted = new ArrayList<Integer>(expected);
+		for(int k = 0; k < sorted.size(); k += 7) {
+			assertEquals(sorted.get(k), s.select(k));
+		}
+		assertEquals(sorted, s.subList(0, s.size()));
+	}
+	
+///////////////test of split and join
+	
+	public void testSplitAndJoin(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < 100; i += 2) {
+			s.insert(i);
+		}
+		SplayTree<Integer> upper = s.split(51);
+		assertEquals(26, s.size());
+		assertEquals(24, upper.size());
+		assertEquals(Integer.valueOf(50), s.select(25));
+		assertEquals(Integer.valueOf(52), upper.select(0));
+		assertEquals(0, s.split(100).size());
+		assertEquals(0, new SplayTree<Integer>().split(1).size());
+		
+		// split on an element in the tree puts it in the upper tree
+		SplayTree<Integer> top = upper.split(60);
+		assertEquals(Integer.valueOf(60), top.select(0));
+		assertEquals(4, upper.size());
+		
+		// join in either order
+		upper.join(top);
+		assertTrue(top.isEmpty());
+		upper.join(s);
+		assertTrue(s.isEmpty());
+		assertEquals(50, upper.size());
+		for(int k = 0; k < 50; k++) {
+			assertEquals(Integer.valueOf(2 * k), upper.select(k));
+		}
+		
+		SplayTree<Integer> overlap = new SplayTree<Integer>();
+		overlap.insert(51);
+		try {
+			upper.join(overlap);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+		assertEquals(50, upper.size());
+		assertEquals(1, overlap.size());
+	}
+	
+	public void testRemoveRange(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < 100; i++) {
+			s.insert(i);
+		}
+		assertEquals(10, s.removeRange(20, 30));
+		assertEquals(90, s.size());
+		assertNull(s.find(20));
+		assertNull(s.find(29));
+		assertEquals(Integer.valueOf(30), s.find(30));
+		assertEquals(0, s.removeRange(20, 30));
+		assertEquals(0, s.removeRange(50, 50));
+		assertEquals(10, s.removeRange(-5, 10));
+		assertEquals(10, s.removeRange(90, 1000));
+		assertEquals(70, s.size());
+		assertEquals(Integer.valueOf(10), s.select(0));
+		assertEquals(Integer.valueOf(89), s.select(69));
+		assertEquals(s.size(), s.toArrayList().size());
+	}
+	
+///////////////test of ordered queries
+	
+	public void testFloorAndCeiling(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		assertNull(s.ceiling(1));
+		assertNull(s.floor(1));
+		for(int i = 0; i < 100; i += 10) {
+			s.insert(i);
+		}
+		assertEquals(Integer.valueOf(20), s.ceiling(20));
+		assertEquals(Integer.valueOf(30), s.ceiling(21));
+		assertEquals(Integer.valueOf(30), s.higher(20));
+		assertEquals(Integer.valueOf(0), s.ceiling(-5));
+		assertNull(s.ceiling(91));
+		assertNull(s.higher(90));
+		assertEquals(Integer.valueOf(20), s.floor(20));
+		assertEquals(Integer.valueOf(20), s.floor(29));
+		assertEquals(Integer.valueOf(10), s.lower(20));
+		assertEquals(Integer.valueOf(90), s.floor(500));
+		assertNull(s.floor(-1));
+		assertNull(s.lower(0));
+		assertEquals(10, s.size());
+		assertEquals(s.size(), s.toArrayList().size());
+		for(int i = 0; i <= 90; i++) {
+			assertEquals(Integer.valueOf((i + 9) / 10 * 10), s.ceiling(i));
+			assertEquals(Integer.valueOf(i / 10 * 10), s.floor(i));
+		}
+	}
+	
+	public void testRange(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < 100; i += 2) {
+			s.insert(i);
+		}
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		Iterator<Integer> i = s.range(11, 21);
+		while(i.hasNext()) {
+			found.add(i.next());
+		}
+		assertEquals("[12, 14, 16, 18, 20]", found.toString());
+		found.clear();
+		i = s.range(90, 1000);
+		while(i.hasNext()) {
+			found.add(i.next());
+		}
+		assertEquals("[90, 92, 94, 96, 98]", found.toString());
+		assertFalse(s.range(50, 50).hasNext());
+		assertFalse(s.range(100, 200).hasNext());
+		try {
+			s.range(100, 200).next();
+			fail();
+		} catch(NoSuchElementException e) {
+		}
+		i = s.range(0, 10);
+		s.insert(1);
+		try {
+			i.next();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+	}
+	
+	public void testPrefixScan(){
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		String[] words = {"tree", "trie", "true", "trap", "tr", "t", "tu", "splay", "zebra"};
+		for(String word : words) {
+			s.insert(new Entry(word, word));
+		}
+		ArrayList<String> found = new ArrayList<String>();
+		Iterator<Entry> i = s.prefixScan("tr", Entry.WORD);
+		while(i.hasNext()) {
+			found.add(i.next().getEntry());
+		}
+		assertEquals("[tr, trap, tree, trie, true]", found.toString());
+		assertFalse(s.prefixScan("q", Entry.WORD).hasNext());
+		assertFalse(s.prefixScan("zz", Entry.WORD).hasNext());
+		assertEquals("zebra", s.prefixScan("z", Entry.WORD).next().getEntry());
+		found.clear();
+		i = s.prefixScan("", Entry.WORD);
+		while(i.hasNext()) {
+			found.add(i.next().getEntry());
+		}
+		assertEquals(words.length, found.size());
+	}
+	
+	public void testCursor(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		SplayTree<Integer>.Cursor c = s.cursor();
+		assertNull(c.next());
+		assertNull(c.peek());
+		for(int i = 0; i < 200; i += 2) {
+			s.insert(i);
+		}
+		c = s.cursor();
+		assertNull(c.peek());
+		for(int i = 0; i < 200; i += 2) {
+			assertEquals(Integer.valueOf(i), c.next());
+			if(i % 10 == 0) {
+				s.find(i * 7 % 200);
+			}
+		}
+		assertNull(c.next());
+		assertNull(c.next());
+		for(int i = 198; i >= 0; i -= 2) {
+			assertEquals(Integer.valueOf(i), c.prev());
+		}
+		assertNull(c.prev());
+		assertEquals(Integer.valueOf(0), c.next());
+		
+		assertEquals(Integer.valueOf(52), c.seek(51));
+		assertEquals(Integer.valueOf(52), c.peek());
+		assertEquals(Integer.valueOf(50), c.prev());
+		s.find(150);
+		assertEquals(Integer.valueOf(52), c.next());
+		assertEquals(Integer.valueOf(54), c.next());
+		assertNull(c.seek(199));
+		assertEquals(Integer.valueOf(198), c.prev());
+		
+		s.insert(1);
+		try {
+			c.next();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+		assertEquals(Integer.valueOf(1), c.seek(1));
+		assertEquals(Integer.valueOf(0), c.prev());
+		
+		SplayTree<Entry> d = new SplayTree<Entry>();
+		d.insert(new Entry("apple", "fruit"));
+		d.insert(new Entry("banana", "fruit"));
+		d.insert(new Entry("cherry", "fruit"));
+		SplayTree<Entry>.Cursor words = d.cursor();
+		assertEquals("banana", words.seek("b", Entry.WORD).getEntry());
+		assertEquals("cherry", words.next().getEntry());
+		assertEquals("banana", words.prev().getEntry());
+		assertEquals("apple", words.prev().getEntry());
+		try {
+			words.seek("b", null);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+	}
+	
+///////////////test of iterators
+	
+	public void testDescendingIterator(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		assertFalse(s.descendingIterator().hasNext());
+		for(int i = 0; i < 100; i++) {
+			s.insert((i * 37) % 100);
+		}
+		Iterator<Integer> i = s.descendingIterator();
+		for(int k = 99; k >= 0; k--) {
+			assertEquals(Integer.valueOf(k), i.next());
+		}
+		assertFalse(i.hasNext());
+		try {
+			i.next();
+			fail();
+		} catch(NoSuchElementException e) {
+		}
+	}
+	
+	public void testIteratorRemove(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < 100; i++) {
+			s.insert(i);
+		}
+		Iterator<Integer> i = s.inOrderIterator();
+		int k = 0;
+		while(i.hasNext()) {
+			assertEquals(Integer.valueOf(k), i.next());
+			if(k % 3 == 0) {
+				i.remove();
+			}
+			k++;
+		}
+		assertEquals(100, k);
+		assertEquals(66, s.size());
+		assertNull(s.find(99));
+		assertEquals(Integer.valueOf(98), s.find(98));
+		
+		i = s.descendingIterator();
+		k = 0;
+		while(i.hasNext()) {
+			i.next();
+			i.remove();
+			k++;
+		}
+		assertEquals(66, k);
+		assertTrue(s.isEmpty());
+		
+		for(int n = 0; n < 10; n++) {
+			s.insert(n);
+		}
+		i = s.inOrderIterator();
+		try {
+			i.remove();
+			fail();
+		} catch(IllegalStateException e) {
+		}
+		i.next();
+		s.remove(5);
+		try {
+			i.next();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+		Iterator<SplayTree<Integer>.BinaryNode> pre = s.iterator();
+		try {
+			pre.remove();
+			fail();
+		} catch(IllegalStateException e) {
+		}
+		Integer first = Integer.valueOf(pre.next().toString());
+		pre.remove();
+		assertNull(s.find(first));
+		try {
+			pre.remove();
+			fail();
+		} catch(IllegalStateException e) {
+		}
+		try {
+			pre.next();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+	}
+	
+	public void testSpliterator(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			s.insert((i * 7) % 1000);
+		}
+		Spliterator<Integer> all = s.inOrderSpliterator();
+		assertEquals(1000, all.getExactSizeIfKnown());
+		assertTrue(all.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SUBSIZED));
+		assertNull(all.getComparator());
+		Spliterator<Integer> prefix = all.trySplit();
+		assertEquals(500, prefix.estimateSize());
+		assertEquals(500, all.estimateSize());
+		final ArrayList<Integer> found = new ArrayList<Integer>();
+		Consumer<Integer> add = new Consumer<Integer>() {
+			public void accept(Integer item) {
+				found.add(item);
+			}
+		};
+		assertTrue(prefix.tryAdvance(add));
+		s.find(900);
+		Spliterator<Integer> middle = prefix.trySplit();
+		while(middle.tryAdvance(add)) {
+		}
+		prefix.forEachRemaining(add);
+		all.forEachRemaining(add);
+		assertEquals(1000, found.size());
+		for(int i = 0; i < 1000; i++) {
+			assertEquals(Integer.valueOf(i), found.get(i));
+		}
+		
+		assertEquals(499500, s.stream().mapToLong(Integer::longValue).sum());
+		assertEquals(499500, s.parallelStream().mapToLong(Integer::longValue).sum());
+		assertEquals(Integer.valueOf(10), s.stream().filter(i -> i >= 10).findFirst().get());
+		assertEquals(0, new SplayTree<Integer>().stream().count());
+		
+		Spliterator<Integer> stale = s.inOrderSpliterator();
+		s.insert(1000);
+		try {
+			stale.tryAdvance(add);
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+		
+		SplayTree<Entry> d = new SplayTree<Entry>();
+		for(int i = 0; i < 100; i++) {
+			d.insert(new Entry("word" + i, "first"));
+			d.insert(new Entry("word" + (i % 10), "more"));
+		}
+		assertEquals(200, d.parallelStream().mapToInt(e -> e.getDefinitions().size()).sum());
+	}
+	
+///////////////test of exporting
+	
+	public void testExport() throws IOException {
+		ArrayList<Integer> sorted = new ArrayList<Integer>();
+		for(int i = 1; i <= 7; i++) {
+			sorted.add(i);
+		}
+		SplayTree<Integer> s = SplayTree.fromSorted(sorted.iterator());
+		assertEquals("[4], [2], [1], [3], [6], [5], [7]", s.toString());
+		StringBuilder out = new StringBuilder();
+		s.writeTo(out);
+		assertEquals("[1], [2], [3], [4], [5], [6], [7]", out.toString());
+		out.setLength(0);
+		s.writeTo(out, SplayTree.Traversal.LEVEL_ORDER);
+		assertEquals("[4], [2], [6], [1], [3], [5], [7]", out.toString());
+		out.setLength(0);
+		s.writeTo(out, SplayTree.Traversal.PRE_ORDER);
+		assertEquals(s.toString(), out.toString());
+		
+		assertEquals(sorted, s.toList());
+		assertEquals("[4, 2, 6, 1, 3, 5, 7]", s.toList(SplayTree.Traversal.LEVEL_ORDER).toString());
+		assertEquals(s.toArrayList(), new ArrayList<Object>(s.toList(SplayTree.Traversal.PRE_ORDER)));
+		assertEquals("", new SplayTree<Integer>().toString());
+		assertTrue(new SplayTree<Integer>().toList().isEmpty());
+		
+		SplayTree<String> words = new SplayTree<String>();
+		for(int i = 0; i < 20000; i++) {
+			words.insert("w\u00e9" + i);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		words.writeTo(Channels.newChannel(bytes));
+		out.setLength(0);
+		words.writeTo(out);
+		assertEquals(out.toString(), new String(bytes.toByteArray(), "UTF-8"));
+	}
+	
+///////////////test of primitive SplayTrees
+	
+	public void testIntSplayTree(){
+		IntSplayTree<String> s = new IntSplayTree<String>();
+		assertTrue(s.isEmpty());
+		assertNull(s.find(1));
+		assertFalse(s.remove(1));
+		assertFalse(s.inOrderIterator().hasNext());
+		
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		Random random = new Random(5);
+		for(int i = 0; i < 20000; i++) {
+			int key = random.nextInt(2000) - 1000;
+			switch(random.nextInt(3)) {
+			case 0:
+				assertEquals(!expected.containsKey(key), s.insert(key, "v" + key));
+				if(!expected.containsKey(key)) {
+					expected.put(key, "v" + key);
+				}
+				break;
+			case 1:
+				assertEquals(expected.remove(key) != null, s.remove(key));
+				break;
+			default:
+				assertEquals(expected.get(key), s.find(key));
+				assertEquals(expected.containsKey(key), s.contains(key));
+				break;
+			}
+		}
+		assertEquals(expected.size(), s.size());
+		PrimitiveIterator.OfInt i = s.inOrderIterator();
+		for(int key : expected.keySet()) {
+			assertEquals(key, i.nextInt());
+		}
+		assertFalse(i.hasNext());
+		
+		assertTrue(s.insert(Integer.MIN_VALUE, null));
+		assertTrue(s.insert(Integer.MAX_VALUE, null));
+		assertTrue(s.contains(Integer.MIN_VALUE));
+		assertNull(s.find(Integer.MAX_VALUE));
+		assertFalse(s.insert(Integer.MAX_VALUE, "again"));
+		
+		i = s.inOrderIterator();
+		while(i.hasNext()) {
+			if(i.nextInt() % 2 == 0) {
+				i.remove();
+			}
+		}
+		i = s.inOrderIterator();
+		while(i.hasNext()) {
+			assertTrue(i.nextInt() % 2 != 0);
+		}
+		i = s.inOrderIterator();
+		s.insert(2, "two");
+		try {
+			i.nextInt();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+	}
+	
+	public void testLongSplayTree(){
+		LongSplayTree<Entry> s = new LongSplayTree<Entry>();
+		long base = 1L << 40;
+		for(long id = 0; id < 1000; id++) {
+			assertTrue(s.insert(base + id * 7 % 1000, new Entry("word" + id, "id")));
+		}
+		assertEquals(1000, s.size());
+		assertNull(s.find(base - 1));
+		assertFalse(s.remove(base + 1000));
+		assertEquals("word143", s.find(base + 1).getEntry());
+		assertTrue(s.remove(base + 1));
+		assertFalse(s.contains(base + 1));
+		PrimitiveIterator.OfLong i = s.inOrderIterator();
+		assertEquals(base, i.nextLong());
+		assertEquals(base + 2, i.nextLong());
+		long last = base + 2;
+		int count = 2;
+		while(i.hasNext()) {
+			long id = i.nextLong();
+			assertTrue(id > last);
+			last = id;
+			count++;
+		}
+		assertEquals(999, count);
+		assertEquals(base + 999, last);
+	}
+	
+	public void testArenaSplayTree(){
+		ArenaSplayTree<Integer> s = new ArenaSplayTree<Integer>(0);
+		assertTrue(s.isEmpty());
+		assertEquals(-1, s.height());
+		assertNull(s.find(1));
+		assertFalse(s.remove(1));
+		
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		Random random = new Random(6);
+		for(int i = 0; i < 20000; i++) {
+			int item = random.nextInt(1000);
+			switch(random.nextInt(3)) {
+			case 0:
+				assertEquals(expected.add(item), s.insert(item));
+				break;
+			case 1:
+				assertEquals(expected.remove(item), s.remove(item));
+				break;
+			default:
+				assertEquals(expected.contains(item) ? Integer.valueOf(item) : null, s.find(item));
+				break;
+			}
+			if(i % 100 == 0) {
+				assertEquals(expected.headSet(item).size(), s.rank(item));
+			}
+		}
+		assertEquals(expected.size(), s.size());
+		ArrayList<Integer> inOrder = new ArrayList<Integer>(expected);
+		for(int k = 0; k < inOrder.size(); k += 7) {
+			assertEquals(inOrder.get(k), s.select(k));
+		}
+		try {
+			s.select(expected.size());
+			fail();
+		} catch(IndexOutOfBoundsException e) {
+		}
+		Iterator<Integer> range = s.range(250, 500);
+		for(Integer item : expected.subSet(250, 500)) {
+			assertEquals(item, range.next());
+		}
+		assertFalse(range.hasNext());
+		assertFalse(s.range(500, 250).hasNext());
+		Iterator<Integer> i = s.inOrderIterator();
+		for(Integer item : expected) {
+			assertEquals(item, i.next());
+		}
+		assertFalse(i.hasNext());
+		
+		i = s.inOrderIterator();
+		while(i.hasNext()) {
+			if(i.next() % 2 == 0) {
+				i.remove();
+			}
+		}
+		for(i = s.inOrderIterator(); i.hasNext();) {
+			assertTrue(i.next() % 2 != 0);
+		}
+		i = s.inOrderIterator();
+		s.insert(2);
+		try {
+			i.next();
+			fail();
+		} catch(ConcurrentModificationException e) {
+		}
+		
+		ArenaSplayTree<Entry> d = new ArenaSplayTree<Entry>();
+		d.insert(new Entry("tree", "green"));
+		d.insert(new Entry("fun", "data structures"));
+		assertTrue(d.insert(new Entry("tree", "wood")));
+		assertEquals(2, d.size());
+		assertEquals(2, d.find("tree", Entry.WORD).getDefinitions().size());
+		assertNull(d.find("hmm", Entry.WORD));
+		try {
+			d.find("tree", null);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+		
+		ArenaSplayTree<Integer> sorted = new ArenaSplayTree<Integer>();
+		for(int k = 0; k < 1000; k++) {
+			sorted.insert(k);
+		}
+		assertEquals(999, sorted.height());
+		assertEquals(Integer.valueOf(0), sorted.find(0));
+		assertTrue(sorted.height() < 999);
+	}
+	
+///////////////test of compact entries
+	
+	public void testDefinitionArena(){
+		DefinitionArena arena = new DefinitionArena(false);
+		int a = arena.add("green");
+		int b = arena.add("green");
+		assertTrue(a != b);
+		assertEquals("green", arena.get(b));
+		
+		DefinitionArena shared = new DefinitionArena(true);
+		int[] offsets = new int[5000];
+		for(int i = 0; i < offsets.length; i++) {
+			offsets[i] = shared.add("definition " + i % 1000 + " \u00e9\u4e2d");
+		}
+		for(int i = 0; i < offsets.length; i++) {
+			assertEquals(offsets[i % 1000], offsets[i]);
+			assertEquals("definition " + i % 1000 + " \u00e9\u4e2d", shared.get(offsets[i]));
+		}
+		long size = shared.size();
+		assertEquals(offsets[0], shared.add("definition 0 \u00e9\u4e2d"));
+		assertEquals(size, shared.size());
+		
+		char[] big = new char[300000];
+		Arrays.fill(big, 'x');
+		String s = new String(big);
+		for(int i = 0; i < 10; i++) {
+			assertEquals(s, arena.get(arena.add(s)));
+		}
+		assertEquals("", arena.get(arena.add("")));
+		try {
+			arena.add(new String(new char[1 << 20]));
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+	}
+	
+	public void testCompactEntry(){
+		DefinitionArena arena = new DefinitionArena(true);
+		SplayTree<CompactEntry> s = new SplayTree<CompactEntry>();
+		s.insert(new CompactEntry("tree", "green", arena));
+		s.insert(new CompactEntry("fun", "data structures", arena));
+		s.insert(new CompactEntry("hmm", "donuts", arena));
+		assertTrue(s.insert(new CompactEntry("tree", "wood", arena)));
+		assertEquals(3, s.size());
+		
+		CompactEntry tree = s.find(CompactEntry.probe("tree"));
+		assertEquals("tree", tree.getEntry());
+		assertSame(tree, CompactEntry.WORD.keyOf(tree));
+		assertEquals(CompactKey.of("tree"), tree);
+		assertEquals("[green, wood]", tree.getDefinitions().toString());
+		assertEquals("[donuts]", s.find(CompactKey.of("hmm"), CompactEntry.WORD).getDefinitions().toString());
+		assertNull(s.find(CompactEntry.probe("tre")));
+		assertTrue(CompactEntry.probe("fun").getDefinitions().isEmpty());
+		Iterator<CompactEntry> i = s.inOrderIterator();
+		assertEquals("fun", i.next().getEntry());
+		assertEquals("hmm", i.next().getEntry());
+		assertEquals("tree", i.next().getEntry());
+		
+		Entry entry = new Entry("fun", "games");
+		entry.insert(new Entry("fun", "enjoyment"));
+		CompactEntry copy = CompactEntry.of(entry, new DefinitionArena(false));
+		assertTrue(s.insert(copy));
+		assertEquals("[data structures, games, enjoyment]", s.find(CompactEntry.probe("fun")).getDefinitions().toString());
+		assertEquals(copy, CompactEntry.probe("fun"));
+		assertEquals(copy.hashCode(), CompactEntry.probe("fun").hashCode());
+		
+		assertTrue(CompactEntry.probe("a").compareTo(CompactEntry.probe("ab")) < 0);
+		assertTrue(CompactEntry.probe("\u00e9").compareTo(CompactEntry.probe("z")) > 0);
+		assertEquals(0, CompactEntry.probe("\u00e9").compareTo(CompactEntry.probe("\u00e9")));
+		
+		// a supplementary character sorts after U+FFFD in UTF-8 but before it in UTF-16
+		s.insert(new CompactEntry("\ud83c\udf33", "tree", arena));
+		s.insert(new CompactEntry("\ufffd", "replacement", arena));
+		for(int n = 0; n < 20; n++) {
+			s.insert(new CompactEntry("\ufffd" + n, "filler", arena));
+		}
+		assertEquals("[tree]", s.find(CompactKey.of("\ud83c\udf33"), CompactEntry.WORD).getDefinitions().toString());
+		assertEquals("[replacement]", s.find(CompactKey.of("\ufffd"), CompactEntry.WORD).getDefinitions().toString());
+		for(int d = 0; d < 100; d++) {
+			s.insert(new CompactEntry("hmm", "donut " + d, arena));
+		}
+		assertEquals(101, s.find(CompactEntry.probe("hmm")).getDefinitions().size());
+		assertEquals("donut 99", s.find(CompactEntry.probe("hmm")).getDefinitions().get(100));
+	}
+	
+///////////////test of bounded SplayTrees
+	
+	public void testBoundedByCount(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		final ArrayList<Integer> evicted = new ArrayList<Integer>();
+		s.setEvictionListener(new EvictionListener<Integer>() {
+			public void evicted(Integer element) {
+				evicted.add(element);
+			}
+		});
+		s.setCapacity(100);
+		assertEquals(100, s.getCapacity());
+		Random random = new Random(7);
+		for(int i = 0; i < 5000; i++) {
+			s.insert(i);
+			assertEquals(Integer.valueOf(i), s.find(i));
+			for(int hot = 0; hot < 10; hot++) {
+				s.find(-1 - random.nextInt(10));
+			}
+			if(i < 10) {
+				s.insert(-1 - i);
+			}
+		}
+		assertEquals(100, s.size());
+		assertEquals(100, s.weight());
+		assertEquals(5010, s.size() + evicted.size());
+		for(int hot = 1; hot <= 10; hot++) {
+			assertEquals(Integer.valueOf(-hot), s.find(-hot));
+		}
+		TreeSet<Integer> all = new TreeSet<Integer>(evicted);
+		all.addAll(s.toList());
+		assertEquals(5010, all.size());
+		assertEquals(s.size(), s.toArrayList().size());
+		
+		s.setCapacity(10);
+		assertEquals(10, s.size());
+		s.setCapacity(Long.MAX_VALUE);
+		for(int i = 0; i < 100; i++) {
+			s.insert(10000 + i);
+		}
+		assertEquals(110, s.size());
+	}
+	
+	public void testBoundedSortedInserts(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		final int[] evicted = new int[1];
+		s.setEvictionListener(new EvictionListener<Integer>() {
+			public void evicted(Integer element) {
+				evicted[0]++;
+			}
+		});
+		s.setCapacity(1000);
+		for(int i = 0; i < 20000; i++) {
+			s.insert(i);
+		}
+		assertEquals(1000, s.size());
+		assertEquals(19000, evicted[0]);
+		assertEquals(Integer.valueOf(19999), s.find(19999));
+		// evictions splay, so the spine sorted inserts build does not survive
+		assertTrue(s.height() < 200);
+		ArrayList<Integer> inOrder = s.toList();
+		for(int i = 0; i < inOrder.size(); i++) {
+			assertEquals(inOrder.get(i), s.select(i));
+		}
+		
+		for(int i = 40000; i > 20000; i--) {
+			s.insert(i);
+		}
+		assertEquals(1000, s.size());
+		assertTrue(s.height() < 200);
+	}
+	
+	public void testBoundedByWeight(){
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		Entry tree = new Entry("tree", "green");
+		long one = Entry.HEAP_BYTES.weigh(tree);
+		s.insert(tree);
+		s.setCapacity(20 * one, Entry.HEAP_BYTES);
+		assertEquals(one, s.weight());
+		s.insert(new Entry("tree", "wood"));
+		assertTrue(s.weight() > one);
+		assertEquals(Entry.HEAP_BYTES.weigh(tree), s.weight());
+		for(int i = 0; i < 100; i++) {
+			s.insert(new Entry("wor" + (char) ('a' + i % 26) + i / 26, "green"));
+			assertTrue(s.weight() <= 20 * one);
+		}
+		assertEquals(weigh(s), s.weight());
+		assertTrue(s.remove(s.select(3)));
+		assertEquals(weigh(s), s.weight());
+		
+		SplayTree<Entry> upper = s.split(s.select(5));
+		assertEquals(weigh(s), s.weight());
+		s.join(upper);
+		assertEquals(weigh(s), s.weight());
+		s.removeRange(s.select(2), s.select(6));
+		assertEquals(weigh(s), s.weight());
+		
+		ArrayList<Entry> batch = new ArrayList<Entry>();
+		for(int i = 0; i < 100; i++) {
+			batch.add(new Entry("batch" + i, "green"));
+		}
+		s.insertAll(batch);
+		assertTrue(s.weight() <= 20 * one);
+		assertEquals(weigh(s), s.weight());
+	}
+	
+	private long weigh(SplayTree<Entry> s) {
+		long total = 0;
+		for(Entry entry : s.toList()) {
+			total += Entry.HEAP_BYTES.weigh(entry);
+		}
+		return total;
+	}
+	
+///////////////test of hash indexes
+	
+	public void testHashIndex(){
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		for(int i = 0; i < 200; i++) {
+			s.insert(new Entry("word" + i, "green"));
+		}
+		assertFalse(s.hasHashIndex());
+		s.setHashIndex(Entry.WORD);
+		assertTrue(s.hasHashIndex());
+		assertIndexed(s, 200);
+		
+		String shape = s.toString();
+		assertEquals("word42", s.find("word42", Entry.WORD).getEntry());
+		assertEquals("word7", s.find(new Entry("word7", "")).getEntry());
+		assertTrue(s.containsKey("word199", Entry.WORD));
+		assertNull(s.find("word200", Entry.WORD));
+		assertEquals(shape, s.toString());
+		
+		s.insert(new Entry("word42", "wood"));
+		assertEquals(2, s.find("word42", Entry.WORD).getDefinitions().size());
+		assertTrue(s.remove(new Entry("word42", "")));
+		assertNull(s.find("word42", Entry.WORD));
+		Iterator<Entry> it = s.inOrderIterator();
+		it.next();
+		it.remove();
+		assertNull(s.find("word0", Entry.WORD));
+		assertIndexed(s, 198);
+		
+		SplayTree<Entry> upper = s.split(new Entry("word5", ""));
+		assertNull(s.find("word50", Entry.WORD));
+		assertIndexed(s, s.size());
+		s.join(upper);
+		assertIndexed(s, 198);
+		upper = s.split(new Entry("word15", ""));
+		s.join(upper);
+		assertIndexed(s, 198);
+		assertEquals(11, s.removeRange(new Entry("word3", ""), new Entry("word4", "")));
+		assertNull(s.find("word31", Entry.WORD));
+		assertIndexed(s, 187);
+		
+		ArrayList<Entry> batch = new ArrayList<Entry>();
+		for(int i = 0; i < 300; i++) {
+			batch.add(new Entry("batch" + i, "green"));
+		}
+		s.insertAll(batch);
+		assertIndexed(s, 487);
+		batch.clear();
+		for(int i = 0; i < 10; i++) {
+			batch.add(new Entry("batch" + i, "wood"));
+		}
+		s.insertAll(batch);
+		assertEquals(2, s.find("batch3", Entry.WORD).getDefinitions().size());
+		assertIndexed(s, 487);
+		
+		s.setCapacity(100);
+		assertIndexed(s, 100);
+		s.setHashIndex(null);
+		assertFalse(s.hasHashIndex());
+		String first = s.toList().get(0).getEntry();
+		String last = s.toList().get(99).getEntry();
+		s.find(first, Entry.WORD);
+		shape = s.toString();
+		assertEquals(last, s.find(last, Entry.WORD).getEntry());
+		assertFalse(shape.equals(s.toString()));
+	}
+	
+	private void assertIndexed(SplayTree<Entry> s, int size) {
+		ArrayList<Entry> elements = s.toList();
+		assertEquals(size, elements.size());
+		String shape = s.toString();
+		for(Entry entry : elements) {
+			assertSame(entry, s.find(entry.getEntry(), Entry.WORD));
+		}
+		assertEquals(shape, s.toString());
+	}
+	
+///////////////test of frozen dictionaries
+	
+	public void testFreeze(){
+		for(int n = 0; n < 70; n++) {
+			SplayTree<Integer> s = new SplayTree<Integer>();
+			for(int i = 0; i < n; i++) {
+				s.insert(2 * i);
+			}
+			FrozenDictionary<Integer> frozen = s.freeze();
+			assertEquals(n, frozen.size());
+			assertEquals(n == 0, frozen.isEmpty());
+			ArrayList<Integer> inOrder = new ArrayList<Integer>();
+			for(Integer i : frozen) {
+				inOrder.add(i);
+			}
+			assertEquals(s.toList(), inOrder);
+			for(int i = -1; i <= 2 * n; i++) {
+				assertEquals(i % 2 == 0 && i < 2 * n ? Integer.valueOf(i) : null, frozen.find(i));
+				assertEquals(i < 2 * n - 1 ? Integer.valueOf(i <= 0 ? 0 : (i + 1) / 2 * 2) : null, frozen.ceiling(i));
+			}
+			Iterator<Integer> range = frozen.range(3, 11);
+			for(int i = 4; i < Math.min(11, 2 * n); i += 2) {
+				assertEquals(Integer.valueOf(i), range.next());
+			}
+			assertFalse(range.hasNext());
+			assertFalse(frozen.range(11, 3).hasNext());
+			assertEquals(inOrder, frozen.thaw().toList());
+		}
+		
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		s.insert(new Entry("tree", "green"));
+		s.insert(new Entry("leaf", "green"));
+		s.insert(new Entry("root", "brown"));
+		FrozenDictionary<Entry> frozen = s.freeze();
+		s.remove(new Entry("leaf", ""));
+		assertEquals("leaf", frozen.find("leaf", Entry.WORD).getEntry());
+		assertTrue(frozen.containsKey("root", Entry.WORD));
+		assertFalse(frozen.containsKey("branch", Entry.WORD));
+		assertEquals("root", frozen.ceiling("my", Entry.WORD).getEntry());
+		assertNull(frozen.ceiling("twig", Entry.WORD));
+		try {
+			frozen.iterator().remove();
+			fail();
+		} catch(UnsupportedOperationException e) {
+		}
+		Iterator<Entry> it = frozen.inOrderIterator();
+		while(it.hasNext()) {
+			it.next();
+		}
+		try {
+			it.next();
+			fail();
+		} catch(NoSuchElementException e) {
+		}
+		SplayTree<Entry> thawed = frozen.thaw();
+		assertEquals(3, thawed.size());
+		thawed.insert(new Entry("branch", "brown"));
+		assertEquals(3, frozen.size());
+		assertNull(frozen.find("branch", Entry.WORD));
+	}
+	
+///////////////test of bulk loading
+	
+	public void testFromSorted(){
+		ArrayList<Integer> sorted = new ArrayList<Integer>();
+		for(int i = 0; i < 1023; i++) {
+			sorted.add(i);
+		}
+		SplayTree<Integer> s = SplayTree.fromSorted(sorted.iterator());
+		assertEquals(1023, s.size());
+		assertEquals(9, s.height());
+		assertEquals(511, s.toArrayList().get(0));
+		assertEquals(sorted, s.subList(0, s.size()));
+		
+		assertTrue(SplayTree.fromSorted(new ArrayList<Integer>().iterator()).isEmpty());
+		
+		ArrayList<Integer> unsorted = new ArrayList<Integer>();
+		unsorted.add(2);
+		unsorted.add(1);
+		try {
+			SplayTree.fromSorted(unsorted.iterator());
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+	}
+	
+	public void testInsertAllAndFindAll(){
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		ArrayList<Integer> batch = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			batch.add((i * 7) % 1000 * 2);
+		}
+		assertTrue(s.insertAll(batch));
+		assertEquals(1000, s.size());
+		assertTrue(s.height() < 10);
+		assertFalse(s.insertAll(batch.subList(0, 10)));
+		
+		batch.clear();
+		for(int i = 0; i < 100; i++) {
+			batch.add(1999 - i * 20);
+			batch.add(1999 - i * 20);
+		}
+		assertTrue(s.insertAll(batch));
+		assertEquals(1100, s.size());
+		assertEquals(Integer.valueOf(1999), s.find(1999));
+		
+		ArrayList<Integer> lookups = new ArrayList<Integer>();
+		lookups.add(1999);
+		lookups.add(-1);
+		lookups.add(4);
+		lookups.add(4);
+		lookups.add(3);
+		assertEquals("[4, 1999]", s.findAll(lookups).toString());
+		for(int i = 0; i < 2000; i++) {
+			lookups.add(i);
+		}
+		ArrayList<Integer> found = s.findAll(lookups);
+		assertEquals(1100, found.size());
+		assertEquals(s.toList(), found);
+		assertTrue(new SplayTree<Integer>().findAll(lookups).isEmpty());
+		
+		lookups.add(null);
+		try {
+			s.findAll(lookups);
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+		
+		SplayTree<Entry> d = new SplayTree<Entry>();
+		for(int i = 0; i < 100; i++) {
+			d.insert(new Entry("word" + i, "first"));
+		}
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		entries.add(new Entry("word5", "second"));
+		entries.add(new Entry("new", "one"));
+		entries.add(new Entry("word5", "third"));
+		entries.add(new Entry("new", "two"));
+		assertTrue(d.insertAll(entries));
+		assertEquals(101, d.size());
+		assertEquals("[first, second, third]", d.find("word5", Entry.WORD).getDefinitions().toString());
+		assertEquals("[one, two]", d.find("new", Entry.WORD).getDefinitions().toString());
+	}
+	
+	public void testBulkLoadMergesDuplicates(){
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		s.insert(new Entry("hmm", "donuts"));
+		s.insert(new Entry("tree", "green"));
+		ArrayList<Entry> sorted = new ArrayList<Entry>();
+		sorted.add(new Entry("fun", "data structures"));
+		sorted.add(new Entry("tree", "balanced"));
+		sorted.add(new Entry("tree", "red/black"));
+		assertTrue(s.bulkLoad(sorted.iterator()));
+		assertEquals(3, s.size());
+		ArrayList<String> vals = new ArrayList<String>();
+		vals.add("green");
+		vals.add("balanced");
+		vals.add("red/black");
+		assertEquals(vals, s.find("tree", Entry.WORD).getDefinitions());
+		assertEquals("fun", s.select(0).getEntry());
+		
+		SplayTree<Integer> n = new SplayTree<Integer>();
+		n.insert(3);
+		ArrayList<Integer> three = new ArrayList<Integer>();
+		three.add(3);
+		three.add(3);
+		assertFalse(n.bulkLoad(three.iterator()));
+		assertEquals(1, n.size());
+		
+		sorted.clear();
+		sorted.add(new Entry("tree", "oak"));
+		sorted.add(new Entry("apple", "red"));
+		try {
+			s.bulkLoad(sorted.iterator());
+			fail();
+		} catch(IllegalArgumentException e) {
+		}
+		assertEquals(vals, s.find("tree", Entry.WORD).getDefinitions());
+		assertEquals(3, s.size());
+	}
+	
+///////////////test of loading dictionary files
+	
+	public void testDictionaryLoader() throws IOException {
+		File file = File.createTempFile("dictionary", ".txt");
+		file.deleteOnExit();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write("tree\tgreen\n");
+		out.write("fun\tdata structures\r\n");
+		out.write("\n");
+		out.write("hmm\tdonuts\n");
+		out.write("tree\tbalanced\n");
+		out.write("\u00e9t\u00e9\tsummer\n");
+		out.write("tree\tred/black");
+		out.close();
+		
+		// tiny chunks so words are split across tasks
+		SplayTree<Entry> s = DictionaryLoader.load(file.toPath(), ForkJoinPool.commonPool(), 8);
+		assertEquals(4, s.size());
+		ArrayList<String> vals = new ArrayList<String>();
+		vals.add("green");
+		vals.add("balanced");
+		vals.add("red/black");
+		assertEquals(vals, s.find("tree", Entry.WORD).getDefinitions());
+		assertEquals("data structures", s.find("fun", Entry.WORD).getDefinitions().get(0));
+		assertEquals("summer", s.find("\u00e9t\u00e9", Entry.WORD).getDefinitions().get(0));
+		assertEquals(s.size(), DictionaryLoader.load(file.toPath()).size());
+		
+		out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write("tree\tgreen\nno tab here\n");
+		out.close();
+		try {
+			DictionaryLoader.load(file.toPath());
+			fail();
+		} catch(IOException e) {
+		}
+	}
+	
+///////////////test of dictionary snapshots
+	
+	public void testDictionarySnapshot() throws IOException {
+		SplayTree<Entry> s = new SplayTree<Entry>();
+		for(int i = 0; i < 1000; i++) {
+			s.insert(new Entry("word" + i, "definition " + i));
+		}
+		s.insert(new Entry("tree", "green"));
+		s.insert(new Entry("tree", "balanced"));
+		s.insert(new Entry("\u00e9t\u00e9", "summer"));
+		
+		File file = File.createTempFile("dictionary", ".snapshot");
+		file.deleteOnExit();
+		DictionarySnapshot.write(s, file.toPath());
+		DictionarySnapshot snapshot = DictionarySnapshot.open(file.toPath());
+		assertEquals(s.size(), snapshot.size());
+		
+		for(int i = 0; i < 1000; i++) {
+			Entry e = snapshot.find("word" + i);
+			assertEquals("word" + i, e.getEntry());
+			assertEquals("definition " + i, e.getDefinitions().get(0));
+		}
+		assertEquals(2, snapshot.find("tree").getDefinitions().size());
+		assertEquals("summer", snapshot.find("\u00e9t\u00e9").getDefinitions().get(0));
+		assertNull(snapshot.find("word"));
+		assertNull(snapshot.find("a"));
+		assertNull(snapshot.find("zzz"));
+		
+		Iterator<Entry> expected = s.inOrderIterator();
+		for(Entry e : snapshot) {
+			assertEquals(expected.next().getEntry(), e.getEntry());
+		}
+		assertFalse(expected.hasNext());
+		SplayTree<Entry> loaded = snapshot.toSplayTree();
+		assertEquals(s.size(), loaded.size());
+		assertEquals("balanced", loaded.find("tree", Entry.WORD).getDefinitions().get(1));
+		
+		DictionarySnapshot.write(new SplayTree<Entry>(), file.toPath());
+		assertEquals(0, DictionarySnapshot.open(file.toPath()).size());
+		assertNull(DictionarySnapshot.open(file.toPath()).find("tree"));
+	}
+	
+///////////////test of the write-ahead log
+	
+	public void testDurableDictionary() throws IOException {
+		Path directory = Files.createTempDirectory("dictionary");
+		DurableDictionary d = DurableDictionary.open(directory, WriteAheadLog.SyncPolicy.PER_OPERATION);
+		assertTrue(d.insert(new Entry("tree", "green")));
+		assertTrue(d.insert(new Entry("fun", "data structures")));
+		assertTrue(d.insert(new Entry("tree", "balanced")));
+		assertTrue(d.insert(new Entry("hmm", "donuts")));
+		assertTrue(d.remove("hmm"));
+		assertFalse(d.remove("hmm"));
+		d.close();
+		
+		// replay the log
+		d = DurableDictionary.open(directory, WriteAheadLog.SyncPolicy.everyBytes(1 << 20));
+		assertEquals(2, d.size());
+		assertEquals(2, d.find("tree").getDefinitions().size());
+		assertNull(d.find("hmm"));
+		
+		// compact, then log on top of the new snapshot
+		d.compact();
+		assertTrue(d.insert(new Entry("tree", "red/black")));
+		d.close();
+		assertTrue(Files.exists(directory.resolve("dictionary.1.snapshot")));
+		assertFalse(Files.exists(directory.resolve("dictionary.0.log")));
+		
+		// a torn record at the end of the log is dropped
+		Files.write(directory.resolve("dictionary.1.log"), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+		d = DurableDictionary.open(directory, WriteAheadLog.SyncPolicy.everyMillis(5));
+		assertEquals(2, d.size());
+		ArrayList<String> vals = new ArrayList<String>();
+		vals.add("green");
+		vals.add("balanced");
+		vals.add("red/black");
+		assertEquals(vals, d.find("tree").getDefinitions());
+		assertTrue(d.insert(new Entry("hmm", "donuts")));
+		d.close();
+		
+		d = DurableDictionary.open(directory, WriteAheadLog.SyncPolicy.PER_OPERATION);
+		assertEquals(3, d.size());
+		d.close();
+		
+		// once the log is closed, changes are refused before they reach the tree
+		try {
+			d.insert(new Entry("fun", "games"));
+			fail();
+		} catch(IOException e) {
+		}
+		assertEquals("[data structures]", d.find("fun").getDefinitions().toString());
+		try {
+			d.insert(new Entry("tree", "oak"));
+			fail();
+		} catch(IOException e) {
+		}
+		assertEquals(vals, d.find("tree").getDefinitions());
+		try {
+			d.remove("hmm");
+			fail();
+		} catch(IOException e) {
+		}
+		assertEquals("donuts", d.find("hmm").getDefinitions().get(0));
+	}
+	
+///////////////stress test of degenerate SplayTrees
+	
+	/**
+	 * Builds and queries a tree from sorted input, which leaves a chain as
+	 * deep as the tree is large. Runs a quick size by default; the full stress
+	 * mode is -Dsplay.stress.size=10000000 -Dsplay.stress.budget=60000
+	 */
+	public void testSortedStress(){
+		int n = Integer.getInteger("splay.stress.size", 200000);
+		long budget = Long.getLong("splay.stress.budget", 10000);
+		long start = System.currentTimeMillis();
+		
+		SplayTree<Integer> s = new SplayTree<Integer>();
+		for(int i = 0; i < n; i++) {
+			s.insert(i);
+		}
+		assertEquals(n, s.size());
+		assertEquals(n - 1, s.height());
+		assertEquals(n, s.toArrayList().size());
+		
+		for(int i = 0; i < n; i++) {
+			assertEquals(Integer.valueOf(i), s.find(i));
+		}
+		for(int i = n - 1; i >= 0; i--) {
+			assertEquals(Integer.valueOf(i), s.find(i));
+		}
+		assertNull(s.find(n));
+		assertEquals(n, s.size());
+		
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("sorted stress took " + elapsed + "ms", elapsed < budget);
+	}
 	
 	public void testNothing(){
 		System.out.println(points);
@@ -0,0 +1,13 @@
+/**
+ * Estimates the weight of a SplayTree element, e.g. its size in bytes, for
+ * bounding a SplayTree by total weight instead of by element count.
+ * Weights must not change while the element is in the tree, except through
+ * Insertable merges.
+ * 
+ * @param <T>	type of the element
+ */
+public interface Weigher<T> {
+
+    public long weigh(T element);
+
+}
@@ -0,0 +1,348 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of typed binary records with group commit. Appends
+ * only copy the record into a buffer; syncing writes everything buffered so
+ * far with a single write and fsync, so concurrent callers waiting on the
+ * same sync share it. When to sync is set by a SyncPolicy.
+ * 
+ * Each record is stored as payload length int, CRC32 int of the type and
+ * payload, type byte and payload. Opening a log replays its records and
+ * cuts off a torn or corrupt tail left by a crash.
+ */
+public class WriteAheadLog implements Closeable {
+	private static final int HEADER_SIZE = 9;
+	
+	/**
+	 * Receives the records of a log as it is replayed
+	 */
+	public interface Replayer {
+		public void replay(byte type, ByteBuffer payload) throws IOException;
+	}
+	
+	/**
+	 * When appended records are forced to disk
+	 */
+	public static final class SyncPolicy {
+		private static final int EACH = 0, TIME = 1, SIZE = 2;
+		
+		/**
+		 * Every commit waits for its record to be forced to disk
+		 */
+		public static final SyncPolicy PER_OPERATION = new SyncPolicy(EACH, 0);
+		
+		private final int mode;
+		private final long threshold;
+		
+		private SyncPolicy(int mode, long threshold) {
+			this.mode = mode;
+			this.threshold = threshold;
+		}
+		
+		/**
+		 * Commits return at once and a background thread forces the log
+		 * every interval, so a crash loses at most the last interval
+		 * 
+		 * @param millis	interval between syncs in milliseconds
+		 * @return 	the policy
+		 */
+		public static SyncPolicy everyMillis(long millis) {
+			if(millis < 1) {
+				throw new IllegalArgumentException();
+			}
+			return new SyncPolicy(TIME, millis);
+		}
+		
+		/**
+		 * Commits return at once until the given number of bytes is buffered;
+		 * the commit that crosses it forces the log
+		 * 
+		 * @param bytes	number of buffered bytes that triggers a sync
+		 * @return 	the policy
+		 */
+		public static SyncPolicy everyBytes(int bytes) {
+			if(bytes < 1) {
+				throw new IllegalArgumentException();
+			}
+			return new SyncPolicy(SIZE, bytes);
+		}
+	}
+	
+	private final FileChannel channel;
+	private final SyncPolicy policy;
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final CRC32 crc = new CRC32();
+	private final ScheduledExecutorService flusher;
+	private ByteBuffer pending = ByteBuffer.allocate(64 << 10);
+	private ByteBuffer spare = ByteBuffer.allocate(64 << 10);
+	private long appended;
+	private volatile long durable;
+	private volatile IOException failure;
+	private volatile boolean closed;
+	
+	private WriteAheadLog(FileChannel channel, SyncPolicy policy) {
+		this.channel = channel;
+		this.policy = policy;
+		if(policy.mode == SyncPolicy.TIME) {
+			flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "WriteAheadLog flusher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			flusher.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						sync();
+					} catch(IOException e) {
+						failure = e;
+					}
+				}
+			}, policy.threshold, policy.threshold, TimeUnit.MILLISECONDS);
+		} else {
+			flusher = null;
+		}
+	}
+	
+	/**
+	 * Opens a log for appending, creating it if it does not exist. Existing
+	 * records are passed to the replayer first, in order; anything after the
+	 * last intact record is truncated.
+	 * 
+	 * @param file	the log file
+	 * @param policy	when to force appended records to disk
+	 * @param replayer	receives the existing records; null to skip them
+	 * @return 	the opened log
+	 * @exception	IOException if the log cannot be read or written
+	 */
+	public static WriteAheadLog open(Path file, SyncPolicy policy, Replayer replayer) throws IOException {
+		if(policy == null) {
+			throw new IllegalArgumentException();
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long end = replay(channel, replayer);
+			if(end < channel.size()) {
+				channel.truncate(end);
+				channel.force(true);
+			}
+			channel.position(end);
+			return new WriteAheadLog(channel, policy);
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		} catch(RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Reads records from the start of the channel
+	 * 
+	 * @return 	the offset just past the last intact record
+	 */
+	private static long replay(FileChannel channel, Replayer replayer) throws IOException {
+		long size = channel.size();
+		long position = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		ByteBuffer payload = ByteBuffer.allocate(4096);
+		CRC32 crc = new CRC32();
+		while(position + HEADER_SIZE <= size) {
+			header.clear();
+			readFully(channel, header, position);
+			header.flip();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			byte type = header.get();
+			if(length < 0 || position + HEADER_SIZE + length > size) {
+				break;
+			}
+			if(payload.capacity() < length) {
+				payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+			}
+			payload.clear();
+			payload.limit(length);
+			readFully(channel, payload, position + HEADER_SIZE);
+			crc.reset();
+			crc.update(type);
+			crc.update(payload.array(), 0, length);
+			if((int) crc.getValue() != checksum) {
+				break;
+			}
+			payload.flip();
+			if(replayer != null) {
+				replayer.replay(type, payload);
+			}
+			position += HEADER_SIZE + length;
+		}
+		return position;
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if(read < 0) {
+				throw new IOException("Unexpected end of log");
+			}
+			position += read;
+		}
+	}
+	
+	/**
+	 * Appends a record to the log buffer. The record is durable once a
+	 * commit or sync covering its sequence number returns.
+	 * 
+	 * @param type	type of the record
+	 * @param payload	the record's bytes
+	 * @return 	sequence number of the record
+	 * @exception	IOException if the log is closed or an earlier sync failed
+	 */
+	public long append(byte type, byte[] payload) throws IOException {
+		if(closed) {
+			throw new ClosedChannelException();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		appendLock.lock();
+		try {
+			crc.reset();
+			crc.update(type);
+			crc.update(payload, 0, payload.length);
+			int size = HEADER_SIZE + payload.length;
+			if(pending.remaining() < size) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+				pending.flip();
+				grown.put(pending);
+				pending = grown;
+			}
+			pending.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+			return ++appended;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+	
+	/**
+	 * Makes a record as durable as the sync policy asks: waits for it to be
+	 * forced under per-operation sync, forces the log if enough bytes are
+	 * buffered under size batching, and returns at once under time batching.
+	 * 
+	 * @param sequence	sequence number returned by append
+	 * @exception	IOException if the log cannot be written
+	 */
+	public void commit(long sequence) throws IOException {
+		if(policy.mode == SyncPolicy.EACH) {
+			sync(sequence);
+		} else if(policy.mode == SyncPolicy.SIZE && bufferedBytes() >= policy.threshold) {
+			sync(sequence);
+		} else if(failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Forces every record appended so far to disk
+	 * 
+	 * @exception	IOException if the log cannot be written
+	 */
+	public void sync() throws IOException {
+		appendLock.lock();
+		long sequence;
+		try {
+			sequence = appended;
+		} finally {
+			appendLock.unlock();
+		}
+		sync(sequence);
+	}
+	
+	/**
+	 * Forces records up to the sequence number to disk. Whoever gets the
+	 * sync lock writes everything buffered so far, so callers that arrive
+	 * while a sync is running are usually covered by the next one.
+	 */
+	private void sync(long sequence) throws IOException {
+		if(durable >= sequence) {
+			return;
+		}
+		syncLock.lock();
+		try {
+			if(durable >= sequence) {
+				return;
+			}
+			if(failure != null) {
+				throw failure;
+			}
+			ByteBuffer batch;
+			long last;
+			appendLock.lock();
+			try {
+				batch = pending;
+				pending = spare;
+				spare = batch;
+				last = appended;
+			} finally {
+				appendLock.unlock();
+			}
+			batch.flip();
+			try {
+				while(batch.hasRemaining()) {
+					channel.write(batch);
+				}
+				channel.force(false);
+			} catch(IOException e) {
+				// the batch is gone from the buffers, so the log cannot go on
+				failure = e;
+				throw e;
+			}
+			batch.clear();
+			durable = last;
+		} finally {
+			syncLock.unlock();
+		}
+	}
+	
+	private int bufferedBytes() {
+		appendLock.lock();
+		try {
+			return pending.position();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+	
+	/**
+	 * Syncs the log and closes it. Appends after this throw
+	 * ClosedChannelException.
+	 * 
+	 * @exception	IOException if the log cannot be written
+	 */
+	public void close() throws IOException {
+		closed = true;
+		if(flusher != null) {
+			flusher.shutdown();
+		}
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+}